@@ -0,0 +1,69 @@
+package se.krka.deps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans a generated jar file and maps its used classes to its dependencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArtifactContainerBuilderBenchmark {
+  @Param({"5000"})
+  public int classes;
+
+  @Param({"1", "4"})
+  public int scanParallelism;
+
+  @Param({"true", "false"})
+  public boolean mappedJarFiles;
+
+  private final Coordinate coordinate = Coordinate.fromString("com.example:generated:1.0");
+  private Set<ArtifactContainer> dependencies;
+  private File jarFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    BenchmarkData data = new BenchmarkData();
+    ArtifactContainer first = data.dependency("first", 2000, 40);
+    ArtifactContainer second = data.dependency("second", 2000, 40);
+    dependencies = Set.of(first, second);
+    jarFile = File.createTempFile("generated", ".jar");
+    data.jar(jarFile, data.classes(classes, classes / 50, List.of(first, second), 2000));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(jarFile.toPath());
+  }
+
+  @Benchmark
+  public ArtifactContainer build() {
+    return new ArtifactContainerBuilder(coordinate, dependencies)
+            .scanParallelism(scanParallelism)
+            .mappedJarFiles(mappedJarFiles)
+            .build(jarFile);
+  }
+}
@@ -0,0 +1,119 @@
+package se.krka.deps;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates benchmark inputs locally, so the benchmarks don't need any downloaded artifacts.
+ * The same seed always gives the same data.
+ */
+class BenchmarkData {
+  private static final String[] JDK_CLASSES = {
+          "java/lang/Object", "java/lang/String", "java/util/List", "java/util/Map",
+          "java/util/ArrayList", "java/util/HashMap", "java/io/InputStream", "java/io/IOException",
+  };
+
+  private final Random random = new Random(4711);
+
+  /**
+   * A dependency that defines the classes dependency.p&lt;package&gt;.D&lt;index&gt;.
+   */
+  ArtifactContainer dependency(String artifactId, int classes, int packages) {
+    Set<String> definedClasses = new HashSet<>();
+    for (int i = 0; i < classes; i++) {
+      definedClasses.add(dependencyClass(artifactId, i, packages).replace('/', '.'));
+    }
+    return new ArtifactContainer(
+            Coordinate.fromString("com.example:" + artifactId + ":1.0"),
+            Set.of(), Set.of(), Set.of(),
+            SymbolSet.of(SymbolTable.getDefault(), definedClasses),
+            Map.of(), Set.of());
+  }
+
+  /**
+   * Class files that refer to each other, to the JDK and to classes defined by the dependencies.
+   */
+  Map<String, byte[]> classes(int count, int packages, List<ArtifactContainer> dependencies, int dependencyClasses) {
+    Map<String, byte[]> classes = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      String name = "com/example/generated/p" + (i % packages) + "/C" + i;
+      List<String> references = new ArrayList<>();
+      for (int j = 0; j < 8; j++) {
+        references.add("com/example/generated/p" + random.nextInt(packages) + "/C" + random.nextInt(count));
+        references.add(JDK_CLASSES[random.nextInt(JDK_CLASSES.length)]);
+        ArtifactContainer dependency = dependencies.get(random.nextInt(dependencies.size()));
+        references.add(dependencyClass(dependency.getCoordinate().getArtifactId(),
+                random.nextInt(dependencyClasses), packages));
+      }
+      classes.put(name + ".class", generateClass(name, references));
+    }
+    return classes;
+  }
+
+  File jar(File file, Map<String, byte[]> classes) throws IOException {
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        output.putNextEntry(new JarEntry(entry.getKey()));
+        output.write(entry.getValue());
+        output.closeEntry();
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Class name -> artifacts that define it, as collected by ArtifactContainerBuilder.
+   */
+  Map<String, Set<String>> classMap(int count, int packages, int artifacts) {
+    Map<String, Set<String>> classMap = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      int pkg = random.nextInt(packages);
+      // Mostly one artifact per package, with some packages split across artifacts
+      int artifact = random.nextInt(10) == 0 ? random.nextInt(artifacts) : pkg % artifacts;
+      classMap.put("com.example.p" + (pkg % 7) + ".q" + pkg + ".C" + i, Set.of("com.example:a" + artifact));
+    }
+    return classMap;
+  }
+
+  private static String dependencyClass(String artifactId, int index, int packages) {
+    return "com/example/" + artifactId + "/p" + (index % packages) + "/D" + index;
+  }
+
+  private static byte[] generateClass(String name, List<String> references) {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+    for (int i = 0; i < references.size(); i++) {
+      writer.visitField(Opcodes.ACC_PRIVATE, "f" + i, "L" + references.get(i) + ";", null, null).visitEnd();
+    }
+    MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "run",
+            "(L" + references.get(0) + ";)L" + references.get(1) + ";", null, null);
+    method.visitCode();
+    for (String reference : references) {
+      method.visitTypeInsn(Opcodes.NEW, reference);
+      method.visitInsn(Opcodes.DUP);
+      method.visitMethodInsn(Opcodes.INVOKESPECIAL, reference, "<init>", "()V", false);
+      method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, reference, "toString", "()Ljava/lang/String;", false);
+      method.visitInsn(Opcodes.POP);
+    }
+    method.visitInsn(Opcodes.ACONST_NULL);
+    method.visitInsn(Opcodes.ARETURN);
+    method.visitMaxs(3, 2);
+    method.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+}
@@ -0,0 +1,47 @@
+package se.krka.deps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the class visitors over class files that are already in memory, without any jar file I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassScanBenchmark {
+  private byte[][] classes;
+
+  @Setup
+  public void setUp() {
+    BenchmarkData data = new BenchmarkData();
+    ArtifactContainer dependency = data.dependency("dependency", 1000, 20);
+    classes = data.classes(1000, 20, List.of(dependency), 1000).values().toArray(new byte[0][]);
+  }
+
+  /**
+   * Scans all 1000 classes, so the throughput is in thousands of classes per second.
+   */
+  @Benchmark
+  public ClassCollector scan() {
+    ClassCollector collector = new ClassCollector(SymbolTable.getDefault());
+    for (byte[] bytes : classes) {
+      collector.loadClass(bytes, 0, bytes.length);
+    }
+    return collector;
+  }
+}
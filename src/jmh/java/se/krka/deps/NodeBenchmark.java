@@ -0,0 +1,43 @@
+package se.krka.deps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simplifies a class -> artifacts map into package prefixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeBenchmark {
+  @Param({"1000", "100000"})
+  public int classes;
+
+  private Map<String, Set<String>> classMap;
+
+  @Setup
+  public void setUp() {
+    classMap = new BenchmarkData().classMap(classes, Math.max(10, classes / 100), 20);
+  }
+
+  @Benchmark
+  public Map<String, Set<String>> getDependencyMap() {
+    return Node.getDependencyMap(classMap);
+  }
+}
@@ -0,0 +1,71 @@
+package se.krka.deps;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes an analyzed artifact, in the legacy JSON format and in the current binary format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+  private ArtifactContainer container;
+  private JSONObject json;
+  private byte[] binary;
+
+  @Setup
+  public void setUp() throws IOException {
+    BenchmarkData data = new BenchmarkData();
+    ArtifactContainer dependency = data.dependency("dependency", 2000, 40);
+    File jarFile = File.createTempFile("generated", ".jar");
+    try {
+      data.jar(jarFile, data.classes(2000, 40, List.of(dependency), 2000));
+      container = new ArtifactContainerBuilder(Coordinate.fromString("com.example:generated:1.0"), Set.of(dependency))
+              .build(jarFile);
+    } finally {
+      Files.delete(jarFile.toPath());
+    }
+    json = JsonWriter.toJsonObject(container);
+    binary = BinaryWriter.toBytes(container, true);
+  }
+
+  @Benchmark
+  public JSONObject jsonWrite() {
+    return JsonWriter.toJsonObject(container);
+  }
+
+  @Benchmark
+  public IncompleteArtifact jsonRead() {
+    return JsonReader.fromJson(json);
+  }
+
+  @Benchmark
+  public byte[] binaryWrite() {
+    return BinaryWriter.toBytes(container, true);
+  }
+
+  @Benchmark
+  public IncompleteArtifact binaryRead() throws IOException {
+    return BinaryReader.fromBytes(binary);
+  }
+}
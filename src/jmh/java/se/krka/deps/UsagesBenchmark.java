@@ -0,0 +1,65 @@
+package se.krka.deps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up which artifacts provide a class through the simplified package mappings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsagesBenchmark {
+  private ArtifactContainer container;
+  private List<String> classNames;
+
+  @Setup
+  public void setUp() {
+    Map<String, Set<String>> classMap = new BenchmarkData().classMap(20000, 200, 20);
+    container = new ArtifactContainer(
+            Coordinate.fromString("com.example:generated:1.0"),
+            Set.of(), Set.of(), Set.of(), Set.of(),
+            new TreeMap<>(Node.getDependencyMap(classMap)),
+            Set.of());
+
+    // Mix of known classes and classes in unknown packages
+    classNames = new ArrayList<>();
+    int i = 0;
+    for (String className : classMap.keySet()) {
+      classNames.add(className);
+      classNames.add(className.replace(".q", ".unknown"));
+      if (++i == 500) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Looks up 1000 class names.
+   */
+  @Benchmark
+  public void getUsages(Blackhole blackhole) {
+    for (String className : classNames) {
+      blackhole.consume(container.getUsages(className));
+    }
+  }
+}
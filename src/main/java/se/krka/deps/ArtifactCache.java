@@ -1,88 +1,227 @@
 package se.krka.deps;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import static java.lang.System.getProperty;
 
 class ArtifactCache {
-  private final File dir;
+  private static final Logger logger = LoggerFactory.getLogger(ArtifactCache.class);
 
-  private ArtifactCache(File dir) {
-    this.dir = dir;
-    if (!dir.exists()) {
-      if (!dir.mkdirs()) {
-        throw new RuntimeException("Could not create directory: " + dir);
-      }
-    }
-    if (!dir.isDirectory()) {
-      throw new RuntimeException("Expected a directory: " + dir);
-    }
+  private static final Metrics.Counter MEMORY_HITS = Metrics.getDefault().counter("cache.memoryHits");
+  private static final Metrics.Counter HITS = Metrics.getDefault().counter("cache.hits");
+  private static final Metrics.Counter MISSES = Metrics.getDefault().counter("cache.misses");
+  private static final Metrics.Counter WRITES = Metrics.getDefault().counter("cache.writes");
+  private static final Metrics.Timer READ_TIMER = Metrics.getDefault().timer("cache.read");
+  private static final Metrics.Timer WRITE_TIMER = Metrics.getDefault().timer("cache.write");
+  private static final Metrics.Timer LOCK_TIMER = Metrics.getDefault().timer("cache.lock");
+
+  private final CacheStore store;
+
+  // Parsed entries shared with other caches in the process, or null
+  private final MemoryCache memory;
+
+  // Directory with entries from before the current store was used, or null
+  private final File legacyDir;
+
+  // Deflate entries with the fastest compression level
+  private final boolean compress;
+
+  ArtifactCache(CacheStore store, MemoryCache memory, File legacyDir, boolean compress) {
+    this.store = store;
+    this.memory = memory;
+    this.legacyDir = legacyDir;
+    this.compress = compress;
   }
 
+  /**
+   * Uses one file per artifact in ~/.m2/repository/dependency-data, or a single indexed file
+   * in the same directory if the system property deps.cache.store is set to "indexed".
+   * Parsed entries are kept in the process-wide {@link MemoryCache}.
+   */
   static ArtifactCache getDefault() {
+    File root = getDefaultDirectory();
+    String storeType = getProperty("deps.cache.store", "directory");
+    switch (storeType) {
+      case "directory":
+        return new ArtifactCache(new DirectoryStore(root), MemoryCache.getDefault(), root, true);
+      case "indexed":
+        return new ArtifactCache(IndexedFileStore.open(new File(root, "dependency-data.db")),
+                MemoryCache.getDefault(), root, true);
+      default:
+        throw new IllegalArgumentException("Unknown cache store: " + storeType);
+    }
+  }
+
+  static File getDefaultDirectory() {
     String homeDir = getProperty("user.home");
-    File root = new File(new File(new File(homeDir, ".m2"), "repository"), "dependency-data");
-    return new ArtifactCache(root);
+    return new File(new File(new File(homeDir, ".m2"), "repository"), "dependency-data");
   }
 
-  ArtifactContainer resolve(
-          Resolver resolver, Coordinate coordinate,
-          Callable<ArtifactContainer> fallback) {
-    if (coordinate.isSnapshot()) {
-      return invoke(fallback);
+  IncompleteArtifact load(Coordinate coordinate) {
+    return load(coordinate, null);
+  }
+
+  /**
+   * A snapshot can change without changing its coordinate, so it is only loaded if it was stored
+   * with the same digest of its content. Each snapshot keeps a single entry, that is replaced
+   * when the snapshot is analyzed again.
+   */
+  IncompleteArtifact load(Coordinate coordinate, byte[] contentDigest) {
+    if (coordinate.isSnapshot() && contentDigest == null) {
+      return null;
+    }
+    if (memory != null) {
+      IncompleteArtifact artifact = memory.get(coordinate);
+      if (artifact != null && Arrays.equals(artifact.getContentDigest(), contentDigest)) {
+        MEMORY_HITS.increment();
+        return artifact;
+      }
+    }
+    long start = READ_TIMER.start();
+    IncompleteArtifact artifact = loadStored(coordinate);
+    READ_TIMER.stop(start);
+    if (artifact == null) {
+      MISSES.increment();
+      return null;
+    }
+    if (!Arrays.equals(artifact.getContentDigest(), contentDigest)) {
+      logger.debug("Content of {} has changed since it was analyzed", coordinate);
+      MISSES.increment();
+      return null;
     }
-    String filename = coordinate.toString().replace(':', '_') + ".json.gz";
-    File file = new File(dir, filename);
+    HITS.increment();
+    if (memory != null) {
+      memory.put(artifact);
+    }
+    return artifact;
+  }
+
+  private IncompleteArtifact loadStored(Coordinate coordinate) {
+    String key = getKey(coordinate);
     try {
-      if (file.exists()) {
-        JSONObject data = getObject(file);
-        IncompleteArtifact artifactContainer = JsonReader.fromJson(data);
-        Set<ArtifactContainer> dependencies = artifactContainer.getDependencies().stream()
-                .map(resolver::resolve)
-                .collect(Collectors.toSet());
-
-        return artifactContainer.complete(dependencies);
-      } else {
-        ArtifactContainer artifactContainer = invoke(fallback);
-        JSONObject jsonObject = JsonWriter.toJsonObject(artifactContainer);
-        writeObject(file, jsonObject);
-        return artifactContainer;
+      byte[] data = store.read(key);
+      if (data != null) {
+        return decode(key, data);
       }
+      if (legacyDir != null) {
+        // Entries written with the directory store before switching to another store
+        File binaryFile = new File(legacyDir, key + ".deps");
+        if (binaryFile.exists()) {
+          data = Files.readAllBytes(binaryFile.toPath());
+          IncompleteArtifact artifact = decode(key, data);
+          if (artifact != null) {
+            store.write(key, data);
+          }
+          return artifact;
+        }
+        File legacyFile = new File(legacyDir, key + ".json.gz");
+        if (legacyFile.exists()) {
+          return migrate(legacyFile, key);
+        }
+      }
+      return null;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private ArtifactContainer invoke(Callable<ArtifactContainer> fallback) {
+  /**
+   * Locks the coordinate for other threads and processes sharing the cache, so that an artifact
+   * is only analyzed once. The lock must be closed by the same thread.
+   */
+  Closeable lock(Coordinate coordinate) {
+    long start = LOCK_TIMER.start();
     try {
-      return fallback.call();
-    } catch (RuntimeException e) {
-      throw e;
-    } catch (Exception e) {
+      return store.lock(getKey(coordinate));
+    } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      LOCK_TIMER.stop(start);
     }
   }
 
-  private void writeObject(File file, JSONObject object) throws IOException {
-    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8)) {
-      object.write(writer, 2, 0);
+  void store(ArtifactContainer artifactContainer) {
+    store(artifactContainer, null);
+  }
+
+  void store(ArtifactContainer artifactContainer, byte[] contentDigest) {
+    Coordinate coordinate = artifactContainer.getCoordinate();
+    if (coordinate.isSnapshot() && contentDigest == null) {
+      return;
+    }
+    IncompleteArtifact artifact = IncompleteArtifact.of(artifactContainer, contentDigest);
+    if (memory != null) {
+      memory.put(artifact);
     }
+    long start = WRITE_TIMER.start();
+    try {
+      store.write(getKey(coordinate), BinaryWriter.toBytes(artifact, compress));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      WRITE_TIMER.stop(start);
+    }
+    WRITES.increment();
+  }
+
+  private static IncompleteArtifact decode(String key, byte[] data) {
+    try {
+      return BinaryReader.fromBytes(data);
+    } catch (IOException e) {
+      // Treat it as missing, it will be overwritten once the artifact has been analyzed again
+      logger.warn("Ignoring corrupt cache entry {}: {}", key, e.getMessage());
+      return null;
+    }
+  }
+
+  private IncompleteArtifact migrate(File legacyFile, String key) throws IOException {
+    IncompleteArtifact legacy;
+    try {
+      legacy = JsonReader.fromJson(getObject(legacyFile));
+    } catch (FileNotFoundException e) {
+      // Migrated by another process since it was found
+      byte[] data = store.read(key);
+      return data != null ? decode(key, data) : null;
+    } catch (IOException | JSONException e) {
+      // Treat it as missing, the new entry is found first once the artifact has been analyzed again
+      logger.warn("Ignoring corrupt legacy cache entry {}: {}", legacyFile, e.getMessage());
+      return null;
+    }
+
+    // JsonWriter writes the unused dependencies to the undeclared field and vice versa
+    IncompleteArtifact artifact = new IncompleteArtifact(
+            legacy.getCoordinate(),
+            legacy.getDependencies(),
+            legacy.getDefinedClasses(),
+            legacy.getMappings(),
+            legacy.getUndeclared(),
+            legacy.getUnused());
+
+    store.write(key, BinaryWriter.toBytes(artifact, compress));
+    if (!legacyFile.delete()) {
+      logger.warn("Could not delete migrated file: {}", legacyFile);
+    }
+    return artifact;
+  }
+
+  private static String getKey(Coordinate coordinate) {
+    return coordinate.toString().replace(':', '_');
   }
 
   private JSONObject getObject(File file) throws IOException {
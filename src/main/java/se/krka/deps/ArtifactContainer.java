@@ -2,7 +2,7 @@ package se.krka.deps;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
 
 public class ArtifactContainer {
 
@@ -26,6 +26,15 @@ public class ArtifactContainer {
   // Set of dependencies that are used, but not explicitly declared
   private final Set<ArtifactContainer> undeclared;
 
+  // Filter over definedClasses, or null
+  private final ClassFilter classFilter;
+
+  // Index of the graph this artifact was built in and its id there, or null and -1
+  private final ArtifactIndex artifactIndex;
+  private final int artifactId;
+
+  // Mappings compiled for getUsages, or null until the first lookup
+  private volatile UsageMatcher usageMatcher;
 
   public ArtifactContainer(
           Coordinate coordinate,
@@ -35,6 +44,20 @@ public class ArtifactContainer {
           Set<String> definedClasses,
           Map<String, Set<String>> mappings,
           Set<ArtifactContainer> undeclared) {
+    this(coordinate, dependencies, flattenedDependencies, unusedDependencies, definedClasses, mappings, undeclared, null, null, -1);
+  }
+
+  ArtifactContainer(
+          Coordinate coordinate,
+          Set<ArtifactContainer> dependencies,
+          Set<ArtifactContainer> flattenedDependencies,
+          Set<ArtifactContainer> unusedDependencies,
+          Set<String> definedClasses,
+          Map<String, Set<String>> mappings,
+          Set<ArtifactContainer> undeclared,
+          ClassFilter classFilter,
+          ArtifactIndex artifactIndex,
+          int artifactId) {
     this.coordinate = coordinate;
     this.dependencies = dependencies;
     this.flattenedDependencies = flattenedDependencies;
@@ -42,9 +65,22 @@ public class ArtifactContainer {
     this.definedClasses = definedClasses;
     this.mappings = mappings;
     this.undeclared = undeclared;
+    this.classFilter = classFilter;
+    this.artifactIndex = artifactIndex;
+    this.artifactId = artifactId;
+  }
+
+  /**
+   * Creates the artifact with the next id in the index, if any.
+   */
+  static ArtifactContainer create(ArtifactIndex artifactIndex, IntFunction<ArtifactContainer> factory) {
+    return artifactIndex != null ? artifactIndex.add(factory) : factory.apply(-1);
   }
 
   public boolean definesClass(String className) {
+    if (classFilter != null) {
+      return classFilter.definesClass(className, definedClasses);
+    }
     return definedClasses.contains(className);
   }
 
@@ -58,29 +94,37 @@ public class ArtifactContainer {
   }
 
   public void printDependencies(String indent) {
-    mappings.forEach((prefix, artifacts) -> {
-      if (artifacts.isEmpty()) {
-        System.out.println(indent + prefix + " expected in runtime");
-      } else {
-        System.out.println(indent + prefix + " found in " + artifacts);
-      }
-    });
+    reportDependencies(new TextReporter(System.out, indent));
+  }
 
-    unusedDependencies.stream().map(ArtifactContainer::getCoordinate).forEach(s ->
-            System.out.println(indent + "Unused: " + s));
+  public void reportDependencies(Reporter reporter) {
+    mappings.forEach((prefix, artifacts) -> reporter.mapping(this, prefix, artifacts));
+    if (!unusedDependencies.isEmpty()) {
+      reporter.unusedDependencies(this, unusedDependencies);
+    }
+    reporter.flush();
   }
 
   public void printUndeclaredDependencies() {
+    reportUndeclaredDependencies(new TextReporter(System.out));
+  }
+
+  public void reportUndeclaredDependencies(Reporter reporter) {
     if (!undeclared.isEmpty()) {
-      System.out.println(getCoordinate() + " has undeclared dependencies on " + undeclared);
+      reporter.undeclaredDependencies(this, undeclared);
     }
+    reporter.flush();
   }
 
   public void printUnusedDependencies() {
+    reportUnusedDependencies(new TextReporter(System.out));
+  }
+
+  public void reportUnusedDependencies(Reporter reporter) {
     if (!unusedDependencies.isEmpty()) {
-      Set<String> unused = unusedDependencies.stream().map(ArtifactContainer::getArtifactName).collect(Collectors.toSet());
-      System.out.println(getCoordinate() + " has unused dependencies on " + unused);
+      reporter.unusedDependencies(this, unusedDependencies);
     }
+    reporter.flush();
   }
 
   public Set<ArtifactContainer> getDependencies() {
@@ -99,43 +143,17 @@ public class ArtifactContainer {
     return mappings;
   }
 
+  /**
+   * @return the artifacts that provide the class according to the mappings, see {@link UsageMatcher#getUsages(String)}
+   */
   public Set<String> getUsages(String className) {
-    Set<String> usages = mappings.get(className);
-    if (usages != null) {
-      return usages;
+    UsageMatcher matcher = usageMatcher;
+    if (matcher == null) {
+      // Compiled on the first lookup, it doesn't matter if two threads both do it
+      matcher = new UsageMatcher(mappings);
+      usageMatcher = matcher;
     }
-
-    usages = mappings.get("**");
-    if (usages != null) {
-      return usages;
-    }
-
-    int lastPeriod = className.lastIndexOf('.');
-    if (lastPeriod == -1) {
-      // No package name at all, try any root package
-      usages = mappings.get("*");
-      if (usages != null) {
-        return usages;
-      }
-    }
-    String packageName = className.substring(0, lastPeriod - 1);
-    return getUsagesForPackage(packageName);
-  }
-
-  private Set<String> getUsagesForPackage(String packageName) {
-    Set<String> usages = mappings.get(packageName + ".**");
-    if (usages != null) {
-      return usages;
-    }
-    usages = mappings.get(packageName + ".*");
-    if (usages != null) {
-      return usages;
-    }
-    int lastPeriod = packageName.lastIndexOf('.');
-    if (lastPeriod == -1) {
-      return Set.of();
-    }
-    return getUsagesForPackage(packageName.substring(0, lastPeriod - 1));
+    return matcher.getUsages(className);
   }
 
   public Set<String> getDefinedClasses() {
@@ -146,6 +164,18 @@ public class ArtifactContainer {
     return unusedDependencies;
   }
 
+  ClassFilter getClassFilter() {
+    return classFilter;
+  }
+
+  ArtifactIndex getArtifactIndex() {
+    return artifactIndex;
+  }
+
+  int getArtifactId() {
+    return artifactId;
+  }
+
   public Set<ArtifactContainer> getUndeclared() {
     return undeclared;
   }
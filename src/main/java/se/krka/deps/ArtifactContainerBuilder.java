@@ -1,104 +1,150 @@
 package se.krka.deps;
 
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 class ArtifactContainerBuilder {
+  private static final Logger logger = LoggerFactory.getLogger(ArtifactContainerBuilder.class);
+
+  // Don't bother splitting up the scan into partitions smaller than this
+  private static final int MIN_PARTITION_SIZE = 128;
+
+  // Java release to pick the classes of multi-release jars for, defaults to the running one
+  private static final int DEFAULT_RELEASE = Integer.getInteger("deps.release", Runtime.version().feature());
+
+  private static final Metrics.Timer SCAN_TIMER = Metrics.getDefault().timer("builder.scan");
+  private static final Metrics.Timer PROVIDERS_TIMER = Metrics.getDefault().timer("builder.providers");
+  private static final Metrics.Timer SUMMARIZE_TIMER = Metrics.getDefault().timer("builder.summarize");
+  private static final Metrics.Counter CLASSES = Metrics.getDefault().counter("builder.classes");
+  private static final Metrics.Counter BYTES = Metrics.getDefault().counter("builder.bytes");
 
   private final Coordinate coordinate;
 
   // Direct declared dependencies
   private final Set<ArtifactContainer> dependencies;
 
-  // Set of classes that are defined in this artifact
-  private final Set<String> definedClasses = new HashSet<>();
+  private final SymbolTable symbols = SymbolTable.getDefault();
+
+  private final ClassCollector collector = new ClassCollector(symbols);
+
+  // Number of workers to split large jar files and class directories across
+  private int scanParallelism = Runtime.getRuntime().availableProcessors();
+
+  // Read jar files through MappedJarFile instead of JarFile
+  private boolean mappedJarFiles = true;
+
+  // Only scan the classes of multi-release jars that this Java release would load
+  private int targetRelease = DEFAULT_RELEASE;
+
+  // Index of all dependencies, or null to check each dependency separately
+  private ClassIndex classIndex;
 
-  // Set of classes that are referenced from this artifact
-  private final Set<String> usedClasses = new HashSet<>();
+  // Class files of the directory as of the last build, or null to scan all of them
+  private ClassManifest classManifest;
 
-  private final MyClassVisitor myClassVisitor;
+  // Ids of the artifacts in the graph, or null to store the transitive dependencies in a HashSet
+  private ArtifactIndex artifactIndex;
+
+  // Number of class files parsed, and size of the class files and jar files read, for the metrics
+  private int scannedClasses;
+  private long scannedBytes;
 
   ArtifactContainerBuilder(
           Coordinate coordinate,
           Set<ArtifactContainer> dependencies) {
     this.coordinate = coordinate;
     this.dependencies = dependencies;
-    this.myClassVisitor = new MyClassVisitor(this);
   }
 
-  void addDefinition(String className) {
-    definedClasses.add(className.replace('/', '.'));
+  ArtifactContainerBuilder scanParallelism(int scanParallelism) {
+    if (scanParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + scanParallelism);
+    }
+    this.scanParallelism = scanParallelism;
+    return this;
+  }
+
+  ArtifactContainerBuilder mappedJarFiles(boolean mappedJarFiles) {
+    this.mappedJarFiles = mappedJarFiles;
+    return this;
   }
 
-  void addOwner(String owner) {
-    if (owner.startsWith("[")) {
-      addDescriptor(owner);
-    } else {
-      addClass(owner);
+  ArtifactContainerBuilder targetRelease(int targetRelease) {
+    if (targetRelease < 8) {
+      throw new IllegalArgumentException("Unsupported release: " + targetRelease);
     }
+    this.targetRelease = targetRelease;
+    return this;
   }
 
-  void addDescriptor(String descriptor) {
-    addDescriptor(Type.getType(descriptor));
+  ArtifactContainerBuilder classIndex(ClassIndex classIndex) {
+    this.classIndex = classIndex;
+    return this;
   }
 
-  private void addDescriptor(Type type) {
-    switch (type.getSort()) {
-      case Type.ARRAY:
-        addDescriptor(type.getElementType());
-        break;
-      case Type.OBJECT:
-        addClass(type.getInternalName());
-        break;
-      case Type.METHOD:
-        addDescriptor(type.getReturnType());
-        for (Type argumentType : type.getArgumentTypes()) {
-          addDescriptor(argumentType);
-        }
-        break;
-      default:
-        // Do nothing
-    }
+  /**
+   * Only parse the class files that have changed since the manifest was saved,
+   * when building from a class directory. The manifest is updated after the scan.
+   */
+  ArtifactContainerBuilder classManifest(ClassManifest classManifest) {
+    this.classManifest = classManifest;
+    return this;
   }
 
-  void addClass(String className) {
-    if (className.startsWith("[")) {
-      throw new IllegalArgumentException("Unexpected class: " + className);
-    }
-    usedClasses.add(className.replace('/', '.'));
+  /**
+   * Adds the artifact to the index, and stores its transitive dependencies as an {@link ArtifactSet}
+   * if all dependencies were built with the same index.
+   */
+  ArtifactContainerBuilder artifactIndex(ArtifactIndex artifactIndex) {
+    this.artifactIndex = artifactIndex;
+    return this;
   }
 
   ArtifactContainer build(File file) {
+    long start = SCAN_TIMER.start();
     loadClasses(file);
+    long scanNanos = SCAN_TIMER.stop(start);
+    CLASSES.add(scannedClasses);
+    BYTES.add(scannedBytes);
+    Metrics.getDefault().recordScan(coordinate, scanNanos, scannedClasses, scannedBytes);
 
-    usedClasses.removeAll(definedClasses);
+    IntHashSet definedIds = collector.getDefinedClasses();
+    Set<String> definedClasses = SymbolSet.of(symbols, definedIds);
 
-    Set<ArtifactContainer> flattenedDependencies = new HashSet<>(dependencies);
-    for (ArtifactContainer dependency : dependencies) {
-      flattenedDependencies.addAll(dependency.getFlattenedDependencies());
-    }
+    Set<ArtifactContainer> flattenedDependencies = ArtifactSet.flatten(artifactIndex, dependencies);
 
     // Map of class -> artifacts that define that class
     final Map<String, Set<ArtifactContainer>> dependsOnClasses = new HashMap<>();
 
-    for (String className : usedClasses) {
-      dependsOnClasses.put(className, findContainers(className, flattenedDependencies));
-    }
+    start = PROVIDERS_TIMER.start();
+    collector.getUsedClasses().forEach(id -> {
+      if (!definedIds.contains(id)) {
+        dependsOnClasses.put(symbols.getName(id), findContainers(id, flattenedDependencies));
+      }
+    });
+    PROVIDERS_TIMER.stop(start);
 
     Set<String> allUsed = dependsOnClasses.values().stream()
                     .flatMap(Collection::stream)
@@ -114,20 +160,25 @@ class ArtifactContainerBuilder {
                     .flatMap(Collection::stream)
                     .collect(Collectors.toSet());
 
+    start = SUMMARIZE_TIMER.start();
     Map<String, Set<ArtifactContainer>> dependencyMap = Node.getDependencyMap(dependsOnClasses);
-    Map<String, Set<String>> mappings = dependencyMap.entrySet().stream()
-            .collect(Collectors.toMap(Map.Entry::getKey, e -> mapToName(e.getValue())));
-    mappings = new TreeMap<>(mappings);
+    Map<String, Set<String>> mappings = new TreeMap<>();
+    dependencyMap.forEach((prefix, containers) -> mappings.put(symbols.intern(prefix), mapToName(containers)));
+    SUMMARIZE_TIMER.stop(start);
 
 
-    return new ArtifactContainer(
+    ClassFilter classFilter = ClassFilter.of(definedClasses);
+    return ArtifactContainer.create(artifactIndex, id -> new ArtifactContainer(
             coordinate,
             dependencies,
             flattenedDependencies,
             unusedDependencies,
             definedClasses,
             mappings,
-            undeclared);
+            undeclared,
+            classFilter,
+            artifactIndex,
+            id));
   }
 
   private boolean isUsed(ArtifactContainer container, Set<String> allUsed) {
@@ -142,11 +193,24 @@ class ArtifactContainerBuilder {
   }
 
   private Set<String> mapToName(Set<ArtifactContainer> value) {
-    return value.stream().map(ArtifactContainer::getArtifactName).collect(Collectors.toSet());
+    IntHashSet ids = new IntHashSet();
+    for (ArtifactContainer container : value) {
+      ids.add(symbols.getId(container.getArtifactName()));
+    }
+    return symbols.getSetPool().intern(ids);
   }
 
-  private Set<ArtifactContainer> findContainers(String className, Set<ArtifactContainer> flattenedDependencies) {
+  private Set<ArtifactContainer> findContainers(int classId, Set<ArtifactContainer> flattenedDependencies) {
     HashSet<ArtifactContainer> set = new HashSet<>();
+    if (classIndex != null) {
+      classIndex.forEachDefiningArtifact(classId, container -> {
+        if (flattenedDependencies.contains(container)) {
+          set.add(container);
+        }
+      });
+      return set;
+    }
+    String className = symbols.getName(classId);
     for (ArtifactContainer dependency : flattenedDependencies) {
       if (dependency.definesClass(className)) {
         set.add(dependency);
@@ -167,7 +231,11 @@ class ArtifactContainerBuilder {
       if (file.isFile() && file.getName().endsWith(".jar")) {
         loadJarFile(file);
       } else if (file.isFile() && file.getName().endsWith(".class")) {
-        loadClassFile(file);
+        scannedClasses++;
+        countBytes(file);
+        loadClassFile(file, collector);
+      } else if (file.isDirectory() && classManifest != null) {
+        loadClassDirectory(file, classManifest);
       } else if (file.isDirectory()) {
         loadClassDirectory(file);
       }
@@ -176,37 +244,197 @@ class ArtifactContainerBuilder {
     }
   }
 
-  private void loadClassDirectory(File directory) {
+  private void loadClassDirectory(File directory) throws IOException {
+    List<File> classFiles = new ArrayList<>();
+    listClassFiles(directory, classFiles);
+    classFiles.forEach(this::countBytes);
+    scan(classFiles, (partition, partitionCollector) -> {
+      for (File classFile : partition) {
+        loadClassFile(classFile, partitionCollector);
+      }
+    });
+  }
+
+  private void loadClassDirectory(File directory, ClassManifest manifest) throws IOException {
+    long scanStart = ClassManifest.now();
+    List<File> classFiles = new ArrayList<>();
+    listClassFiles(directory, classFiles);
+
+    Path root = directory.toPath();
+    Map<String, ClassManifest.Entry> scanned = new ConcurrentHashMap<>();
+    List<File> changed = new ArrayList<>();
+    for (File classFile : classFiles) {
+      String path = root.relativize(classFile.toPath()).toString();
+      ClassManifest.Entry entry = manifest.get(path);
+      if (entry != null && manifest.isUnchanged(entry, classFile.length(), ClassManifest.getLastModified(classFile))) {
+        scanned.put(path, entry);
+      } else {
+        changed.add(classFile);
+      }
+    }
+
+    changed.forEach(this::countBytes);
+    scan(changed, (partition, partitionCollector) -> {
+      for (File classFile : partition) {
+        String path = root.relativize(classFile.toPath()).toString();
+        long lastModified = ClassManifest.getLastModified(classFile);
+        byte[] bytes = Files.readAllBytes(classFile.toPath());
+        byte[] digest = ClassManifest.digest(bytes);
+        ClassManifest.Entry entry = manifest.get(path);
+        if (entry != null && entry.hasDigest(digest)) {
+          entry = entry.withAttributes(bytes.length, lastModified);
+        } else {
+          ClassCollector fileCollector = new ClassCollector(symbols);
+          fileCollector.loadClass(bytes, 0, bytes.length);
+          entry = new ClassManifest.Entry(bytes.length, lastModified, digest,
+                  fileCollector.getDefinedClasses().toSortedArray(),
+                  fileCollector.getUsedClasses().toSortedArray());
+        }
+        scanned.put(path, entry);
+      }
+    });
+    logger.debug("Parsed {} of {} class files in {}", changed.size(), classFiles.size(), directory);
+
+    for (ClassManifest.Entry entry : scanned.values()) {
+      for (int id : entry.getDefinedClasses()) {
+        collector.getDefinedClasses().add(id);
+      }
+      for (int id : entry.getUsedClasses()) {
+        collector.getUsedClasses().add(id);
+      }
+    }
+    manifest.save(scanned, scanStart);
+  }
+
+  private void listClassFiles(File directory, List<File> classFiles) throws IOException {
     File[] files = directory.listFiles();
     if (files != null) {
       for (File file : files) {
-        loadClasses(file);
+        if (file.isFile() && file.getName().endsWith(".class")) {
+          classFiles.add(file);
+        } else if (file.isDirectory()) {
+          listClassFiles(file, classFiles);
+        } else {
+          loadClasses(file);
+        }
       }
     }
   }
 
   private void loadJarFile(File file) throws IOException {
-    try (JarFile jarFile = new JarFile(file)) {
-      Enumeration<JarEntry> entries = jarFile.entries();
-      while (entries.hasMoreElements()) {
-        JarEntry entry = entries.nextElement();
-        if (entry.getName().endsWith(".class")) {
-          try (InputStream inputStream = jarFile.getInputStream(entry)) {
-            loadClass(inputStream);
-          }
+    countBytes(file);
+    if (!mappedJarFiles || !loadMappedJarFile(file)) {
+      loadJarFileEntries(file);
+    }
+  }
+
+  /**
+   * @return false if the jar file has to be read through JarFile instead, since it is not a plain zip file,
+   *         has a broken entry, or was truncated while mapped
+   */
+  private boolean loadMappedJarFile(File file) throws IOException {
+    int classes = scannedClasses;
+    try {
+      MappedJarFile jarFile = MappedJarFile.open(file);
+      scan(jarFile.getClassEntries(targetRelease), (partition, partitionCollector) -> {
+        for (MappedJarFile.Entry entry : partition) {
+          jarFile.loadClass(entry, partitionCollector);
         }
+      });
+      // Only unmapped once every partition is done, after a failure that is left to the garbage collector
+      jarFile.close();
+      return true;
+    } catch (ZipException e) {
+      logger.debug("Falling back to JarFile for {}: {}", file, e.getMessage());
+    } catch (RuntimeException | InternalError e) {
+      // Partitions fail with a wrapped ZipException, and reading a mapping
+      // of a file that has since been truncated fails with an InternalError
+      if (!(e instanceof InternalError) && !isCausedByZipException(e)) {
+        throw e;
+      }
+      logger.debug("Falling back to JarFile for {}: {}", file, e.toString());
+    }
+    // The classes that were read before the failure are read again, adding them to the collector is idempotent
+    scannedClasses = classes;
+    return false;
+  }
+
+  private static boolean isCausedByZipException(Throwable throwable) {
+    for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ZipException) {
+        return true;
       }
     }
+    return false;
   }
 
-  private void loadClassFile(File file) throws IOException {
+  private void loadJarFileEntries(File file) throws IOException {
+    // Versioned entries of a jar that isn't multi-release are never loaded, but are still listed
+    List<String> classEntries;
+    try (JarFile jarFile = openJarFile(file)) {
+      classEntries = jarFile.versionedStream()
+              .map(JarEntry::getName)
+              .filter(name -> name.endsWith(".class") && !name.startsWith("META-INF/versions/"))
+              .collect(Collectors.toList());
+    }
+    // Each partition opens the jar file on its own since reading entries
+    // from a shared JarFile is synchronized
+    scan(classEntries, (partition, partitionCollector) -> {
+      try (JarFile jarFile = openJarFile(file)) {
+        for (String name : partition) {
+          try (InputStream inputStream = jarFile.getInputStream(jarFile.getJarEntry(name))) {
+            partitionCollector.loadClass(inputStream);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @return a view of the jar file where entries are looked up as the target release would
+   */
+  private JarFile openJarFile(File file) throws IOException {
+    return new JarFile(file, true, ZipFile.OPEN_READ, Runtime.Version.parse(Integer.toString(targetRelease)));
+  }
+
+  private void loadClassFile(File file, ClassCollector collector) throws IOException {
     try (InputStream inputStream = new FileInputStream(file)) {
-      loadClass(inputStream);
+      collector.loadClass(inputStream);
     }
   }
 
-  private void loadClass(InputStream inputStream) throws IOException {
-    ClassReader classReader = new ClassReader(inputStream);
-    classReader.accept(myClassVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  private void countBytes(File file) {
+    if (Metrics.ENABLED) {
+      scannedBytes += file.length();
+    }
+  }
+
+  private <T> void scan(List<T> entries, PartitionScanner<T> scanner) throws IOException {
+    scannedClasses += entries.size();
+    int partitions = Math.min(scanParallelism, entries.size() / MIN_PARTITION_SIZE);
+    if (partitions <= 1) {
+      scanner.scan(entries, collector);
+      return;
+    }
+
+    // Every partition gets its own visitor and sets, merged once all are done
+    List<ClassCollector> collectors = IntStream.range(0, partitions).parallel()
+            .mapToObj(partition -> {
+              int from = partition * entries.size() / partitions;
+              int to = (partition + 1) * entries.size() / partitions;
+              ClassCollector partitionCollector = new ClassCollector(symbols);
+              try {
+                scanner.scan(entries.subList(from, to), partitionCollector);
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              }
+              return partitionCollector;
+            })
+            .collect(Collectors.toList());
+    collectors.forEach(collector::addAll);
+  }
+
+  private interface PartitionScanner<T> {
+    void scan(List<T> partition, ClassCollector collector) throws IOException;
   }
 }
@@ -0,0 +1,33 @@
+package se.krka.deps;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Dense ids for the artifacts of a dependency graph, in the order they were built, so that
+ * sets of them can be stored as an {@link ArtifactSet}.
+ */
+class ArtifactIndex {
+  private volatile ArtifactContainer[] containers = new ArtifactContainer[64];
+  private int size;
+
+  /**
+   * Creates an artifact with the next id and adds it to the index.
+   */
+  synchronized ArtifactContainer add(IntFunction<ArtifactContainer> factory) {
+    int id = size;
+    ArtifactContainer container = factory.apply(id);
+    ArtifactContainer[] current = containers;
+    if (id >= current.length) {
+      current = Arrays.copyOf(current, 2 * current.length);
+    }
+    current[id] = container;
+    containers = current;
+    size++;
+    return container;
+  }
+
+  ArtifactContainer get(int id) {
+    return containers[id];
+  }
+}
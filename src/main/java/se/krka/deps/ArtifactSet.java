@@ -0,0 +1,109 @@
+package se.krka.deps;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable set of artifacts in an {@link ArtifactIndex}, stored as a bitset over their ids.
+ *
+ * Artifacts get their ids after their dependencies, so the transitive dependencies of an artifact
+ * only use bits below its own id, and the closure is just the union of the closures of its
+ * dependencies. This takes N / 8 bytes per artifact instead of a hash set entry per dependency.
+ */
+class ArtifactSet extends AbstractSet<ArtifactContainer> {
+  private final ArtifactIndex index;
+  private final long[] words;
+  private final int size;
+
+  private ArtifactSet(ArtifactIndex index, long[] words) {
+    this.index = index;
+    this.words = words;
+    int size = 0;
+    for (long word : words) {
+      size += Long.bitCount(word);
+    }
+    this.size = size;
+  }
+
+  /**
+   * @return the dependencies and all of their transitive dependencies, as an ArtifactSet if they
+   *         were all built with the index, or else as a HashSet
+   */
+  static Set<ArtifactContainer> flatten(ArtifactIndex index, Set<ArtifactContainer> dependencies) {
+    if (index != null && dependencies.stream().allMatch(dependency -> isIndexed(index, dependency))) {
+      int maxId = -1;
+      for (ArtifactContainer dependency : dependencies) {
+        maxId = Math.max(maxId, dependency.getArtifactId());
+      }
+      long[] words = new long[(maxId >> 6) + 1];
+      for (ArtifactContainer dependency : dependencies) {
+        long[] flattened = ((ArtifactSet) dependency.getFlattenedDependencies()).words;
+        for (int i = 0; i < flattened.length; i++) {
+          words[i] |= flattened[i];
+        }
+        words[dependency.getArtifactId() >> 6] |= 1L << dependency.getArtifactId();
+      }
+      return new ArtifactSet(index, words);
+    }
+
+    Set<ArtifactContainer> flattenedDependencies = new HashSet<>(dependencies);
+    for (ArtifactContainer dependency : dependencies) {
+      flattenedDependencies.addAll(dependency.getFlattenedDependencies());
+    }
+    return flattenedDependencies;
+  }
+
+  private static boolean isIndexed(ArtifactIndex index, ArtifactContainer container) {
+    Set<ArtifactContainer> flattened = container.getFlattenedDependencies();
+    return container.getArtifactIndex() == index
+            && flattened instanceof ArtifactSet
+            && ((ArtifactSet) flattened).index == index;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof ArtifactContainer)) {
+      return false;
+    }
+    ArtifactContainer container = (ArtifactContainer) o;
+    if (container.getArtifactIndex() != index) {
+      return false;
+    }
+    int id = container.getArtifactId();
+    return (id >> 6) < words.length && (words[id >> 6] & (1L << id)) != 0;
+  }
+
+  @Override
+  public Iterator<ArtifactContainer> iterator() {
+    return new Iterator<>() {
+      private int wordIndex;
+      private long word = words.length > 0 ? words[0] : 0;
+
+      @Override
+      public boolean hasNext() {
+        while (word == 0 && wordIndex + 1 < words.length) {
+          word = words[++wordIndex];
+        }
+        return word != 0;
+      }
+
+      @Override
+      public ArtifactContainer next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int id = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+        return index.get(id);
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,35 @@
+package se.krka.deps;
+
+import java.util.Set;
+import java.util.function.Function;
+
+class ArtifactSource {
+  private final Coordinate coordinate;
+
+  // Direct declared dependencies
+  private final Set<Coordinate> dependencies;
+
+  // Creates the artifact once all dependencies have been resolved
+  private final Function<Set<ArtifactContainer>, ArtifactContainer> builder;
+
+  ArtifactSource(
+          Coordinate coordinate,
+          Set<Coordinate> dependencies,
+          Function<Set<ArtifactContainer>, ArtifactContainer> builder) {
+    this.coordinate = coordinate;
+    this.dependencies = dependencies;
+    this.builder = builder;
+  }
+
+  Coordinate getCoordinate() {
+    return coordinate;
+  }
+
+  Set<Coordinate> getDependencies() {
+    return dependencies;
+  }
+
+  ArtifactContainer build(Set<ArtifactContainer> dependencies) {
+    return builder.apply(dependencies);
+  }
+}
@@ -0,0 +1,149 @@
+package se.krka.deps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of artifact data in the {@link ArtifactCache}.
+ *
+ * <pre>
+ * int     magic ("DEPS")
+ * byte    version
+ * byte    flags (bit 0: body is deflated, preceded by its inflated length as a varint)
+ * body    sections, each a tag byte and a varint length followed by the section data
+ * int     CRC32 of everything before it (since version 2)
+ * </pre>
+ *
+ * Coordinates and artifact names live in one sorted, front coded string table, the other sections
+ * refer to them by index. Since version 3 the class names and usage prefixes are front coded in their
+ * own sections instead, so they can be decoded lazily, when they are first needed.
+ * Snapshots also have a digest of the content they were analyzed from.
+ * Readers skip sections with unknown tags.
+ */
+final class BinaryFormat {
+  static final int MAGIC = 0x44455053;
+  static final int VERSION = 3;
+
+  // Oldest version that can still be read, it has no checksum and classes in the string table
+  static final int MIN_VERSION = 1;
+
+  static final int FLAG_DEFLATED = 1;
+
+  static final int STRINGS = 1;
+  static final int COORDINATE = 2;
+  static final int DEPENDENCIES = 3;
+  static final int CLASSES = 4;
+  static final int USAGES = 5;
+  static final int UNUSED = 6;
+  static final int UNDECLARED = 7;
+  static final int CLASS_FILTER = 8;
+  static final int CONTENT_DIGEST = 9;
+
+  private BinaryFormat() {
+  }
+
+  static class Output extends ByteArrayOutputStream {
+    void writeInt(int value) {
+      write(value >>> 24);
+      write(value >>> 16);
+      write(value >>> 8);
+      write(value);
+    }
+
+    void writeVarInt(int value) {
+      while ((value & ~0x7F) != 0) {
+        write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      write(value);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+      write(bytes, offset, length);
+    }
+
+    void writeSection(int tag, Output section) {
+      write(tag);
+      writeVarInt(section.size());
+      write(section.buf, 0, section.size());
+    }
+
+    byte[] buffer() {
+      return buf;
+    }
+  }
+
+  static class Input {
+    private final byte[] bytes;
+    private int position;
+    private final int end;
+
+    Input(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    boolean hasRemaining() {
+      return position < end;
+    }
+
+    int readByte() throws IOException {
+      if (position >= end) {
+        throw new EOFException();
+      }
+      return bytes[position++] & 0xFF;
+    }
+
+    int readInt() throws IOException {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    void readBytes(byte[] target, int offset, int length) throws IOException {
+      if (length > end - position) {
+        throw new EOFException();
+      }
+      System.arraycopy(bytes, position, target, offset, length);
+      position += length;
+    }
+
+    Input slice(int length) throws IOException {
+      if (length < 0 || length > end - position) {
+        throw new EOFException();
+      }
+      Input slice = new Input(bytes, position, length);
+      position += length;
+      return slice;
+    }
+
+    byte[] array() {
+      return bytes;
+    }
+
+    int position() {
+      return position;
+    }
+
+    int remaining() {
+      return end - position;
+    }
+  }
+
+  static String decode(byte[] bytes, int length) {
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,288 @@
+package se.krka.deps;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static se.krka.deps.BinaryFormat.Input;
+
+class BinaryReader {
+  private final SymbolTable symbols = SymbolTable.getDefault();
+
+  // String table index -> symbol id
+  private int[] strings;
+
+  private BinaryReader() {
+  }
+
+  static IncompleteArtifact fromBytes(byte[] bytes) throws IOException {
+    return new BinaryReader().read(bytes);
+  }
+
+  private static void verifyChecksum(byte[] bytes, int length) throws IOException {
+    CRC32 checksum = new CRC32();
+    checksum.update(bytes, 0, length);
+    if (new Input(bytes, length, 4).readInt() != (int) checksum.getValue()) {
+      throw new IOException("Checksum mismatch");
+    }
+  }
+
+  private IncompleteArtifact read(byte[] bytes) throws IOException {
+    Input input = new Input(bytes, 0, bytes.length);
+    if (input.readInt() != BinaryFormat.MAGIC) {
+      throw new IOException("Not a dependency data entry");
+    }
+    int version = input.readByte();
+    if (version < BinaryFormat.MIN_VERSION || version > BinaryFormat.VERSION) {
+      throw new IOException("Unsupported version: " + version);
+    }
+    if (version >= 2) {
+      int length = bytes.length - 4;
+      if (length < input.position()) {
+        throw new EOFException();
+      }
+      verifyChecksum(bytes, length);
+      input = new Input(bytes, input.position(), length - input.position());
+    }
+    int flags = input.readByte();
+    Input body = input;
+    if ((flags & BinaryFormat.FLAG_DEFLATED) != 0) {
+      body = inflate(input, input.readVarInt());
+    }
+
+    Coordinate coordinate = null;
+    Set<Coordinate> dependencies = null;
+    Set<String> definedClasses = null;
+    Map<String, Set<String>> mappings = null;
+    Set<String> unused = null;
+    Set<String> undeclared = null;
+    ClassFilter classFilter = null;
+    byte[] contentDigest = null;
+    while (body.hasRemaining()) {
+      int tag = body.readByte();
+      Input section = body.slice(body.readVarInt());
+      switch (tag) {
+        case BinaryFormat.STRINGS:
+          readStrings(section);
+          break;
+        case BinaryFormat.COORDINATE:
+          coordinate = readCoordinate(section);
+          break;
+        case BinaryFormat.DEPENDENCIES:
+          dependencies = readDependencies(section);
+          break;
+        case BinaryFormat.CLASSES:
+          definedClasses = version >= 3 ? readLazyClasses(section) : readSymbols(section);
+          break;
+        case BinaryFormat.USAGES:
+          mappings = version >= 3 ? readLazyMappings(section) : readMappings(section);
+          break;
+        case BinaryFormat.UNUSED:
+          unused = readSet(section);
+          break;
+        case BinaryFormat.UNDECLARED:
+          undeclared = readSet(section);
+          break;
+        case BinaryFormat.CLASS_FILTER:
+          classFilter = ClassFilter.read(section);
+          break;
+        case BinaryFormat.CONTENT_DIGEST:
+          contentDigest = new byte[section.remaining()];
+          section.readBytes(contentDigest, 0, contentDigest.length);
+          break;
+        default:
+          // Unknown section, added by a later version
+      }
+    }
+    if (coordinate == null || dependencies == null || definedClasses == null
+            || mappings == null || unused == null || undeclared == null) {
+      throw new IOException("Incomplete dependency data entry");
+    }
+    return new IncompleteArtifact(coordinate, dependencies, definedClasses, mappings, unused, undeclared, classFilter, contentDigest);
+  }
+
+  private static Input inflate(Input input, int length) throws IOException {
+    byte[] inflated = new byte[length];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input.array(), input.position(), input.remaining());
+      int offset = 0;
+      while (offset < length) {
+        int count = inflater.inflate(inflated, offset, length - offset);
+        if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        offset += count;
+      }
+      if (offset != length) {
+        throw new IOException("Truncated dependency data entry");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
+    }
+    return new Input(inflated, 0, length);
+  }
+
+  private void readStrings(Input input) throws IOException {
+    strings = readFrontCoded(symbols, input, input.readVarInt());
+  }
+
+  /**
+   * @return the symbol ids of the strings
+   */
+  private static int[] readFrontCoded(SymbolTable symbols, Input input, int count) throws IOException {
+    int[] ids = new int[count];
+    byte[] buffer = new byte[256];
+    for (int i = 0; i < count; i++) {
+      int shared = input.readVarInt();
+      int length = input.readVarInt();
+      if (shared + length > buffer.length) {
+        byte[] grown = new byte[2 * (shared + length)];
+        System.arraycopy(buffer, 0, grown, 0, shared);
+        buffer = grown;
+      }
+      input.readBytes(buffer, shared, length);
+      ids[i] = symbols.getId(BinaryFormat.decode(buffer, shared + length));
+    }
+    return ids;
+  }
+
+  private int readString(Input input) throws IOException {
+    checkStrings();
+    int index = input.readVarInt();
+    if (index < 0 || index >= strings.length) {
+      throw new IOException("Invalid string reference: " + index);
+    }
+    return strings[index];
+  }
+
+  private void checkStrings() throws IOException {
+    if (strings == null) {
+      throw new IOException("Missing string table");
+    }
+  }
+
+  private Coordinate readCoordinate(Input input) throws IOException {
+    String groupId = symbols.getName(readString(input));
+    String artifactId = symbols.getName(readString(input));
+    String version = symbols.getName(readString(input));
+    String packagingType = symbols.getName(readString(input));
+    String classifier = symbols.getName(readString(input));
+    return symbols.intern(Coordinate.of(groupId, artifactId, version, packagingType, classifier));
+  }
+
+  private Set<Coordinate> readDependencies(Input input) throws IOException {
+    int count = input.readVarInt();
+    Set<Coordinate> dependencies = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      dependencies.add(readCoordinate(input));
+    }
+    return dependencies;
+  }
+
+  private Map<String, Set<String>> readMappings(Input input) throws IOException {
+    int count = input.readVarInt();
+    Map<String, Set<String>> mappings = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      String prefix = symbols.getName(readString(input));
+      mappings.put(prefix, readArtifactNames(input));
+    }
+    return mappings;
+  }
+
+  /*
+   * The lazy sections keep a copy of their own bytes rather than the whole entry, and decode them
+   * from the start every time, so that a failed decode can be retried.
+   */
+
+  private Set<String> readLazyClasses(Input input) throws IOException {
+    int count = input.readVarInt();
+    byte[] section = readRemaining(input);
+    SymbolTable symbols = this.symbols;
+    return new LazySymbolSet(count, section.length, () -> {
+      try {
+        IntHashSet ids = new IntHashSet();
+        for (int id : readFrontCoded(symbols, new Input(section, 0, section.length), count)) {
+          ids.add(id);
+        }
+        return SymbolSet.of(symbols, ids);
+      } catch (IOException e) {
+        throw new RuntimeException("Corrupt class section", e);
+      }
+    });
+  }
+
+  private Map<String, Set<String>> readLazyMappings(Input input) throws IOException {
+    checkStrings();
+    int count = input.readVarInt();
+    byte[] section = readRemaining(input);
+    SymbolTable symbols = this.symbols;
+    int[] strings = this.strings;
+    return new LazyMappings(count, section.length + 4L * strings.length, () -> {
+      try {
+        Input sectionInput = new Input(section, 0, section.length);
+        int[] prefixes = readFrontCoded(symbols, sectionInput, count);
+        Map<String, Set<String>> mappings = new TreeMap<>();
+        for (int prefix : prefixes) {
+          IntHashSet ids = new IntHashSet();
+          readIds(sectionInput, strings, ids);
+          mappings.put(symbols.getName(prefix), symbols.getSetPool().intern(ids));
+        }
+        return mappings;
+      } catch (IOException e) {
+        throw new RuntimeException("Corrupt usage section", e);
+      }
+    });
+  }
+
+  private static byte[] readRemaining(Input input) throws IOException {
+    byte[] bytes = new byte[input.remaining()];
+    input.readBytes(bytes, 0, bytes.length);
+    return bytes;
+  }
+
+  private Set<String> readSymbols(Input input) throws IOException {
+    IntHashSet ids = new IntHashSet();
+    readIds(input, ids);
+    return SymbolSet.of(symbols, ids);
+  }
+
+  private Set<String> readArtifactNames(Input input) throws IOException {
+    IntHashSet ids = new IntHashSet();
+    readIds(input, ids);
+    return symbols.getSetPool().intern(ids);
+  }
+
+  private Set<String> readSet(Input input) throws IOException {
+    IntHashSet ids = new IntHashSet();
+    readIds(input, ids);
+    Set<String> set = new HashSet<>();
+    ids.forEach(id -> set.add(symbols.getName(id)));
+    return set;
+  }
+
+  private void readIds(Input input, IntHashSet ids) throws IOException {
+    checkStrings();
+    readIds(input, strings, ids);
+  }
+
+  private static void readIds(Input input, int[] strings, IntHashSet ids) throws IOException {
+    int count = input.readVarInt();
+    int index = 0;
+    for (int i = 0; i < count; i++) {
+      index += input.readVarInt();
+      if (index < 0 || index >= strings.length) {
+        throw new IOException("Invalid string reference: " + index);
+      }
+      ids.add(strings[index]);
+    }
+  }
+}
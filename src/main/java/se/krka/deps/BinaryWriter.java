@@ -0,0 +1,171 @@
+package se.krka.deps;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static se.krka.deps.BinaryFormat.Output;
+
+class BinaryWriter {
+  private final Map<String, Integer> stringIds = new HashMap<>();
+
+  private BinaryWriter() {
+  }
+
+  static byte[] toBytes(ArtifactContainer container, boolean compress) {
+    return toBytes(IncompleteArtifact.of(container), compress);
+  }
+
+  static byte[] toBytes(IncompleteArtifact artifact, boolean compress) {
+    return new BinaryWriter().write(artifact, compress);
+  }
+
+  private byte[] write(IncompleteArtifact artifact, boolean compress) {
+    // Class names and prefixes are stored in their own sections, so that
+    // they don't have to be decoded along with the rest of the entry
+    TreeSet<String> strings = new TreeSet<>();
+    addStrings(strings, artifact.getCoordinate());
+    artifact.getDependencies().forEach(dependency -> addStrings(strings, dependency));
+    artifact.getMappings().values().forEach(strings::addAll);
+    strings.addAll(artifact.getUnused());
+    strings.addAll(artifact.getUndeclared());
+
+    Output body = new Output();
+    Output stringTable = new Output();
+    for (String string : strings) {
+      stringIds.put(string, stringIds.size());
+    }
+    writeFrontCoded(stringTable, strings);
+    body.writeSection(BinaryFormat.STRINGS, stringTable);
+
+    Output coordinate = new Output();
+    writeCoordinate(coordinate, artifact.getCoordinate());
+    body.writeSection(BinaryFormat.COORDINATE, coordinate);
+
+    Output dependencies = new Output();
+    dependencies.writeVarInt(artifact.getDependencies().size());
+    artifact.getDependencies().forEach(dependency -> writeCoordinate(dependencies, dependency));
+    body.writeSection(BinaryFormat.DEPENDENCIES, dependencies);
+
+    Output classes = new Output();
+    writeFrontCoded(classes, new TreeSet<>(artifact.getDefinedClasses()));
+    body.writeSection(BinaryFormat.CLASSES, classes);
+
+    Output usages = new Output();
+    TreeMap<String, Set<String>> mappings = new TreeMap<>(artifact.getMappings());
+    writeFrontCoded(usages, mappings.keySet());
+    mappings.values().forEach(artifacts -> writeStringSet(usages, artifacts));
+    body.writeSection(BinaryFormat.USAGES, usages);
+
+    body.writeSection(BinaryFormat.UNUSED, writeStringSet(artifact.getUnused()));
+    body.writeSection(BinaryFormat.UNDECLARED, writeStringSet(artifact.getUndeclared()));
+
+    ClassFilter classFilter = artifact.getClassFilter();
+    if (classFilter == null) {
+      classFilter = ClassFilter.of(artifact.getDefinedClasses());
+    }
+    Output filter = new Output();
+    classFilter.write(filter);
+    body.writeSection(BinaryFormat.CLASS_FILTER, filter);
+
+    byte[] contentDigest = artifact.getContentDigest();
+    if (contentDigest != null) {
+      Output digest = new Output();
+      digest.writeBytes(contentDigest, 0, contentDigest.length);
+      body.writeSection(BinaryFormat.CONTENT_DIGEST, digest);
+    }
+
+    Output output = new Output();
+    output.writeInt(BinaryFormat.MAGIC);
+    output.write(BinaryFormat.VERSION);
+    if (compress) {
+      output.write(BinaryFormat.FLAG_DEFLATED);
+      output.writeVarInt(body.size());
+      deflate(body, output);
+    } else {
+      output.write(0);
+      output.writeBytes(body.buffer(), 0, body.size());
+    }
+    CRC32 checksum = new CRC32();
+    checksum.update(output.buffer(), 0, output.size());
+    output.writeInt((int) checksum.getValue());
+    return output.toByteArray();
+  }
+
+  private static void addStrings(Set<String> strings, Coordinate coordinate) {
+    strings.add(coordinate.getGroupId());
+    strings.add(coordinate.getArtifactId());
+    strings.add(coordinate.getVersion());
+    strings.add(coordinate.getPackagingType().getId());
+    strings.add(coordinate.getClassifier());
+  }
+
+  private static void writeFrontCoded(Output output, Collection<String> strings) {
+    // Front coding: each string is stored as the length of the prefix it shares
+    // with the previous string, followed by the rest of it
+    output.writeVarInt(strings.size());
+    byte[] previous = new byte[0];
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      int shared = 0;
+      int max = Math.min(previous.length, bytes.length);
+      while (shared < max && previous[shared] == bytes[shared]) {
+        shared++;
+      }
+      output.writeVarInt(shared);
+      output.writeVarInt(bytes.length - shared);
+      output.writeBytes(bytes, shared, bytes.length - shared);
+      previous = bytes;
+    }
+  }
+
+  private void writeCoordinate(Output output, Coordinate coordinate) {
+    output.writeVarInt(stringIds.get(coordinate.getGroupId()));
+    output.writeVarInt(stringIds.get(coordinate.getArtifactId()));
+    output.writeVarInt(stringIds.get(coordinate.getVersion()));
+    output.writeVarInt(stringIds.get(coordinate.getPackagingType().getId()));
+    output.writeVarInt(stringIds.get(coordinate.getClassifier()));
+  }
+
+  private Output writeStringSet(Set<String> strings) {
+    Output output = new Output();
+    writeStringSet(output, strings);
+    return output;
+  }
+
+  private void writeStringSet(Output output, Set<String> strings) {
+    // Sorted and delta encoded, which keeps most class references to a single byte
+    List<Integer> ids = new ArrayList<>(strings.size());
+    strings.forEach(string -> ids.add(stringIds.get(string)));
+    ids.sort(null);
+    output.writeVarInt(ids.size());
+    int previous = 0;
+    for (int id : ids) {
+      output.writeVarInt(id - previous);
+      previous = id;
+    }
+  }
+
+  private static void deflate(Output body, Output output) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    try {
+      deflater.setInput(body.buffer(), 0, body.size());
+      deflater.finish();
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        output.writeBytes(buffer, 0, length);
+      }
+    } finally {
+      deflater.end();
+    }
+  }
+}
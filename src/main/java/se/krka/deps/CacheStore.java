@@ -0,0 +1,24 @@
+package se.krka.deps;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Storage backend for {@link ArtifactCache} entries.
+ */
+interface CacheStore {
+  /**
+   * @return the data stored for key, or null if there is none
+   */
+  byte[] read(String key) throws IOException;
+
+  /**
+   * Writes are atomic, readers see either the old data or the new data.
+   */
+  void write(String key, byte[] data) throws IOException;
+
+  /**
+   * Locks the key for all threads and processes sharing the store, until the lock is closed.
+   */
+  Closeable lock(String key) throws IOException;
+}
@@ -0,0 +1,94 @@
+package se.krka.deps;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+class ClassCollector {
+
+  private final SymbolTable symbols;
+
+  // Set of classes that are defined in the scanned classes
+  private final IntHashSet definedClasses = new IntHashSet();
+
+  // Set of classes that are referenced from the scanned classes
+  private final IntHashSet usedClasses = new IntHashSet();
+
+  private final MyClassVisitor myClassVisitor;
+
+  ClassCollector(SymbolTable symbols) {
+    this.symbols = symbols;
+    this.myClassVisitor = new MyClassVisitor(this);
+  }
+
+  void loadClass(InputStream inputStream) throws IOException {
+    ClassReader classReader = new ClassReader(inputStream);
+    classReader.accept(myClassVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  }
+
+  void loadClass(byte[] bytes, int offset, int length) {
+    ClassReader classReader = new ClassReader(bytes, offset, length);
+    classReader.accept(myClassVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  }
+
+  void addAll(ClassCollector other) {
+    definedClasses.addAll(other.definedClasses);
+    usedClasses.addAll(other.usedClasses);
+  }
+
+  void addDefinition(String className) {
+    definedClasses.add(symbols.getId(className.replace('/', '.')));
+  }
+
+  void addOwner(String owner) {
+    if (owner.startsWith("[")) {
+      addDescriptor(owner);
+    } else {
+      addClass(owner);
+    }
+  }
+
+  void addDescriptor(String descriptor) {
+    addDescriptor(Type.getType(descriptor));
+  }
+
+  private void addDescriptor(Type type) {
+    switch (type.getSort()) {
+      case Type.ARRAY:
+        addDescriptor(type.getElementType());
+        break;
+      case Type.OBJECT:
+        addClass(type.getInternalName());
+        break;
+      case Type.METHOD:
+        addDescriptor(type.getReturnType());
+        for (Type argumentType : type.getArgumentTypes()) {
+          addDescriptor(argumentType);
+        }
+        break;
+      default:
+        // Do nothing
+    }
+  }
+
+  void addClass(String className) {
+    if (className.startsWith("[")) {
+      throw new IllegalArgumentException("Unexpected class: " + className);
+    }
+    usedClasses.add(symbols.getId(className.replace('/', '.')));
+  }
+
+  SymbolTable getSymbols() {
+    return symbols;
+  }
+
+  IntHashSet getDefinedClasses() {
+    return definedClasses;
+  }
+
+  IntHashSet getUsedClasses() {
+    return usedClasses;
+  }
+}
@@ -0,0 +1,112 @@
+package se.krka.deps;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Bloom filter over the classes defined by an artifact, to reject most classes it doesn't define
+ * without looking them up in the set of defined classes, which may not even be decoded yet.
+ *
+ * Uses String.hashCode, which is specified, so filters can be stored in the {@link ArtifactCache}.
+ */
+class ClassFilter {
+  // About 1% false positives
+  private static final int BITS_PER_CLASS = 10;
+  private static final int HASHES = 7;
+
+  // More than this is never useful, so a stored filter with more is corrupt
+  private static final int MAX_HASHES = 16;
+
+  // Outcome of the checks, to tune the filter size on real graphs
+  private static final Metrics.Counter REJECTED = Metrics.getDefault().counter("classFilter.rejected");
+  private static final Metrics.Counter HITS = Metrics.getDefault().counter("classFilter.hits");
+  private static final Metrics.Counter FALSE_POSITIVES = Metrics.getDefault().counter("classFilter.falsePositives");
+
+  private final int hashes;
+  private final long[] bits;
+
+  private ClassFilter(int hashes, long[] bits) {
+    this.hashes = hashes;
+    this.bits = bits;
+  }
+
+  static ClassFilter of(Collection<String> classNames) {
+    int words = Math.max(1, (classNames.size() * BITS_PER_CLASS + 63) / 64);
+    ClassFilter filter = new ClassFilter(HASHES, new long[words]);
+    for (String className : classNames) {
+      filter.add(className);
+    }
+    return filter;
+  }
+
+  /**
+   * Checks the filter before the defined classes, and counts the outcome.
+   */
+  boolean definesClass(String className, Set<String> definedClasses) {
+    if (!mightContain(className)) {
+      REJECTED.increment();
+      return false;
+    }
+    if (definedClasses.contains(className)) {
+      HITS.increment();
+      return true;
+    }
+    FALSE_POSITIVES.increment();
+    return false;
+  }
+
+  boolean mightContain(String className) {
+    long bitCount = 64L * bits.length;
+    int hash = className.hashCode();
+    int step = mix(hash);
+    for (int i = 0; i < hashes; i++) {
+      long bit = Integer.toUnsignedLong(hash + i * step) % bitCount;
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void add(String className) {
+    long bitCount = 64L * bits.length;
+    int hash = className.hashCode();
+    int step = mix(hash);
+    for (int i = 0; i < hashes; i++) {
+      long bit = Integer.toUnsignedLong(hash + i * step) % bitCount;
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private static int mix(int hash) {
+    // Second hash for double hashing, odd so that it never gets stuck on one bit
+    hash *= 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) | 1;
+  }
+
+  void write(BinaryFormat.Output output) {
+    output.writeVarInt(hashes);
+    output.writeVarInt(bits.length);
+    for (long word : bits) {
+      output.writeInt((int) (word >>> 32));
+      output.writeInt((int) word);
+    }
+  }
+
+  static ClassFilter read(BinaryFormat.Input input) throws IOException {
+    int hashes = input.readVarInt();
+    if (hashes < 1 || hashes > MAX_HASHES) {
+      throw new IOException("Invalid class filter hash count: " + hashes);
+    }
+    int words = input.readVarInt();
+    if (words < 1 || words > input.remaining() / 8) {
+      throw new IOException("Invalid class filter size: " + words);
+    }
+    long[] bits = new long[words];
+    for (int i = 0; i < words; i++) {
+      bits[i] = ((long) input.readInt() << 32) | (input.readInt() & 0xFFFFFFFFL);
+    }
+    return new ClassFilter(hashes, bits);
+  }
+}
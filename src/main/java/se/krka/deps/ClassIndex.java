@@ -0,0 +1,106 @@
+package se.krka.deps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Index of class name -> artifacts that define that class, for all artifacts in a graph.
+ *
+ * Providers are stored in an array indexed by the class id in the {@link SymbolTable},
+ * as a single artifact or an array of artifacts for classes that are defined more than once.
+ * Slots are replaced rather than modified and the array is only grown under the lock, so that
+ * lookups don't need to lock.
+ *
+ * Artifacts are indexed on the first lookup after they were added, so the classes of
+ * artifacts loaded lazily from the cache are not decoded unless something is looked up.
+ */
+public class ClassIndex {
+  private final SymbolTable symbols;
+  private volatile AtomicReferenceArray<Object> providers = new AtomicReferenceArray<>(1 << 12);
+
+  // Artifacts that have been added but not indexed yet
+  private final List<ArtifactContainer> pending = new ArrayList<>();
+  private volatile boolean hasPending;
+
+  ClassIndex(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
+  synchronized void add(ArtifactContainer container) {
+    pending.add(container);
+    hasPending = true;
+  }
+
+  private void indexPending() {
+    if (!hasPending) {
+      return;
+    }
+    synchronized (this) {
+      for (ArtifactContainer container : pending) {
+        SymbolSet definedClasses = SymbolSet.of(symbols, container.getDefinedClasses());
+        definedClasses.forEachId(id -> add(id, container));
+      }
+      pending.clear();
+      hasPending = false;
+    }
+  }
+
+  private void add(int id, ArtifactContainer container) {
+    AtomicReferenceArray<Object> current = providers;
+    if (id >= current.length()) {
+      AtomicReferenceArray<Object> grown = new AtomicReferenceArray<>(Math.max(2 * current.length(), id + 1));
+      for (int i = 0; i < current.length(); i++) {
+        grown.set(i, current.get(i));
+      }
+      current = grown;
+      providers = grown;
+    }
+    Object existing = current.get(id);
+    if (existing == null) {
+      current.set(id, container);
+    } else if (existing instanceof ArtifactContainer) {
+      current.set(id, new ArtifactContainer[] {(ArtifactContainer) existing, container});
+    } else {
+      ArtifactContainer[] containers = (ArtifactContainer[]) existing;
+      ArtifactContainer[] added = Arrays.copyOf(containers, containers.length + 1);
+      added[containers.length] = container;
+      current.set(id, added);
+    }
+  }
+
+  public Set<ArtifactContainer> getDefiningArtifacts(String className) {
+    int id = symbols.findId(className);
+    if (id < 0) {
+      return Set.of();
+    }
+    Object provider = getProvider(id);
+    if (provider == null) {
+      return Set.of();
+    }
+    if (provider instanceof ArtifactContainer) {
+      return Set.of((ArtifactContainer) provider);
+    }
+    return Set.of((ArtifactContainer[]) provider);
+  }
+
+  void forEachDefiningArtifact(int classId, Consumer<ArtifactContainer> consumer) {
+    Object provider = getProvider(classId);
+    if (provider instanceof ArtifactContainer) {
+      consumer.accept((ArtifactContainer) provider);
+    } else if (provider != null) {
+      for (ArtifactContainer container : (ArtifactContainer[]) provider) {
+        consumer.accept(container);
+      }
+    }
+  }
+
+  private Object getProvider(int id) {
+    indexPending();
+    AtomicReferenceArray<Object> providers = this.providers;
+    return id < providers.length() ? providers.get(id) : null;
+  }
+}
@@ -0,0 +1,344 @@
+package se.krka.deps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class files of a directory as of the last scan, with the classes each of them defines and uses,
+ * so that a later scan only has to parse the class files that have changed since.
+ *
+ * A class file is considered unchanged if its size and modification time are the same, or otherwise
+ * if the digest of its contents is the same. Like git does for racily clean index entries, the size
+ * and modification time are not trusted for class files that were modified shortly before the scan
+ * started, since a file system with a coarse clock may give a rewrite the same modification time.
+ *
+ * A manifest is kept for as long as its directory exists. The manifests of directories that have been
+ * deleted, and manifests in an older format, are deleted the first time a process opens a manifest.
+ */
+class ClassManifest {
+  private static final Logger logger = LoggerFactory.getLogger(ClassManifest.class);
+
+  private static final int MAGIC = 0x444d414e;
+  private static final int VERSION = 3;
+
+  private static final String SUFFIX = ".manifest";
+
+  // Coarsest modification time resolution of common file systems, FAT has 2 seconds
+  private static final long TIMESTAMP_GRANULARITY = TimeUnit.SECONDS.toNanos(2);
+
+  private static final AtomicBoolean PRUNED = new AtomicBoolean();
+
+  private final File file;
+
+  // Normalized absolute path of the directory
+  private final String directory;
+  private final SymbolTable symbols;
+
+  // Map of path relative to the directory -> class file
+  private final Map<String, Entry> entries;
+
+  // When the scan of the entries started, in nanoseconds since the epoch
+  private long scanStart;
+
+  private ClassManifest(File file, String directory, SymbolTable symbols, Map<String, Entry> entries, long scanStart) {
+    this.file = file;
+    this.directory = directory;
+    this.symbols = symbols;
+    this.entries = entries;
+    this.scanStart = scanStart;
+  }
+
+  /**
+   * Stores the manifest of a directory in ~/.m2/repository/dependency-data/manifests,
+   * since the build directory itself is usually cleaned between builds.
+   */
+  static ClassManifest forDirectory(File directory) {
+    File manifestDir = new File(ArtifactCache.getDefaultDirectory(), "manifests");
+    if (PRUNED.compareAndSet(false, true)) {
+      prune(manifestDir);
+    }
+    String path = getPath(directory);
+    return load(new File(manifestDir, toHex(digest(path.getBytes(StandardCharsets.UTF_8))) + SUFFIX), directory);
+  }
+
+  /**
+   * @return the manifest of the directory in the file, or an empty manifest if the file is missing or unreadable
+   */
+  static ClassManifest load(File file, File directory) {
+    SymbolTable symbols = SymbolTable.getDefault();
+    String path = getPath(directory);
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      readHeader(input);
+      String storedPath = input.readUTF();
+      if (!storedPath.equals(path)) {
+        throw new IOException("Manifest of another directory: " + storedPath);
+      }
+      long scanStart = input.readLong();
+      return new ClassManifest(file, path, symbols, read(input, symbols), scanStart);
+    } catch (FileNotFoundException e) {
+      return new ClassManifest(file, path, symbols, new HashMap<>(), 0);
+    } catch (IOException e) {
+      logger.warn("Ignoring unreadable manifest {}: {}", file, e.getMessage());
+      return new ClassManifest(file, path, symbols, new HashMap<>(), 0);
+    }
+  }
+
+  /**
+   * Deletes the manifests in the directory that belong to directories that no longer exist,
+   * or that can't be read by this version.
+   */
+  static void prune(File manifestDir) {
+    File[] files = manifestDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        readHeader(input);
+        if (new File(input.readUTF()).isDirectory()) {
+          continue;
+        }
+      } catch (FileNotFoundException e) {
+        // Already deleted
+        continue;
+      } catch (IOException e) {
+        // Stale as well
+      }
+      logger.debug("Deleting stale manifest {}", file);
+      if (!file.delete() && file.exists()) {
+        logger.warn("Could not delete stale manifest {}", file);
+      }
+    }
+  }
+
+  private static void readHeader(DataInputStream input) throws IOException {
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Not a class manifest");
+    }
+    int version = input.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version: " + version);
+    }
+  }
+
+  private static String getPath(File directory) {
+    return directory.getAbsoluteFile().toPath().normalize().toString();
+  }
+
+  Entry get(String path) {
+    return entries.get(path);
+  }
+
+  /**
+   * @return true if the class file can be reused without reading it: it has the same size and modification
+   *         time as the entry, and the modification time is not within the timestamp granularity of the scan
+   */
+  boolean isUnchanged(Entry entry, long size, long lastModified) {
+    return entry.size == size && entry.lastModified == lastModified
+            && lastModified < scanStart - TIMESTAMP_GRANULARITY;
+  }
+
+  /**
+   * @return the current time in the unit of {@link #getLastModified(File)}, to pass to {@link #save(Map, long)}
+   */
+  static long now() {
+    return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+  }
+
+  /**
+   * Replaces the content with the class files of the latest scan and writes it to disk, unless every
+   * entry was reused as is. A class file that had to be read again, even if it turned out unchanged,
+   * is written with the new scan start so that it can be trusted by the next scan.
+   *
+   * @param scanStart when the scan started, from {@link #now()} before the class files were listed
+   */
+  void save(Map<String, Entry> scanned, long scanStart) throws IOException {
+    if (isReused(scanned)) {
+      return;
+    }
+    entries.clear();
+    entries.putAll(scanned);
+    this.scanStart = scanStart;
+
+    Path target = file.toPath();
+    Files.createDirectories(target.getParent());
+    Path tempFile = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile.toFile())))) {
+        write(output);
+      }
+      Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private boolean isReused(Map<String, Entry> scanned) {
+    if (scanned.size() != entries.size() || !file.exists()) {
+      return false;
+    }
+    for (Map.Entry<String, Entry> entry : scanned.entrySet()) {
+      if (entries.get(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Map<String, Entry> read(DataInputStream input, SymbolTable symbols) throws IOException {
+    int[] strings = new int[input.readInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = symbols.getId(input.readUTF());
+    }
+
+    int count = input.readInt();
+    Map<String, Entry> entries = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      String path = input.readUTF();
+      long size = input.readLong();
+      long lastModified = input.readLong();
+      byte[] digest = new byte[input.readUnsignedByte()];
+      input.readFully(digest);
+      int[] definedClasses = readIds(input, strings);
+      int[] usedClasses = readIds(input, strings);
+      entries.put(path, new Entry(size, lastModified, digest, definedClasses, usedClasses));
+    }
+    return entries;
+  }
+
+  private static int[] readIds(DataInputStream input, int[] strings) throws IOException {
+    int[] ids = new int[input.readInt()];
+    for (int i = 0; i < ids.length; i++) {
+      int index = input.readInt();
+      if (index < 0 || index >= strings.length) {
+        throw new IOException("Invalid string reference: " + index);
+      }
+      ids[i] = strings[index];
+    }
+    return ids;
+  }
+
+  private void write(DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeByte(VERSION);
+    output.writeUTF(directory);
+    output.writeLong(scanStart);
+
+    // Symbol id -> string table index
+    Map<Integer, Integer> stringIndex = new HashMap<>();
+    List<Integer> strings = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      for (int[] ids : new int[][] {entry.definedClasses, entry.usedClasses}) {
+        for (int id : ids) {
+          if (stringIndex.putIfAbsent(id, strings.size()) == null) {
+            strings.add(id);
+          }
+        }
+      }
+    }
+    output.writeInt(strings.size());
+    for (int id : strings) {
+      output.writeUTF(symbols.getName(id));
+    }
+
+    output.writeInt(entries.size());
+    for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+      Entry entry = mapEntry.getValue();
+      output.writeUTF(mapEntry.getKey());
+      output.writeLong(entry.size);
+      output.writeLong(entry.lastModified);
+      output.writeByte(entry.digest.length);
+      output.write(entry.digest);
+      writeIds(output, entry.definedClasses, stringIndex);
+      writeIds(output, entry.usedClasses, stringIndex);
+    }
+  }
+
+  private static void writeIds(DataOutputStream output, int[] ids, Map<Integer, Integer> stringIndex) throws IOException {
+    output.writeInt(ids.length);
+    for (int id : ids) {
+      output.writeInt(stringIndex.get(id));
+    }
+  }
+
+  static long getLastModified(File file) throws IOException {
+    return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+  }
+
+  static byte[] digest(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder();
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final byte[] digest;
+
+    // Symbol ids of the classes that the class file defines and uses
+    private final int[] definedClasses;
+    private final int[] usedClasses;
+
+    Entry(long size, long lastModified, byte[] digest, int[] definedClasses, int[] usedClasses) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digest = digest;
+      this.definedClasses = definedClasses;
+      this.usedClasses = usedClasses;
+    }
+
+    byte[] getDigest() {
+      return digest;
+    }
+
+    boolean hasDigest(byte[] digest) {
+      return Arrays.equals(this.digest, digest);
+    }
+
+    Entry withAttributes(long size, long lastModified) {
+      return new Entry(size, lastModified, digest, definedClasses, usedClasses);
+    }
+
+    int[] getDefinedClasses() {
+      return definedClasses;
+    }
+
+    int[] getUsedClasses() {
+      return usedClasses;
+    }
+  }
+}
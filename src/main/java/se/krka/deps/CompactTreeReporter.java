@@ -0,0 +1,73 @@
+package se.krka.deps;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One artifact per line, indented by two spaces per level. Artifacts that were already listed are
+ * marked with a * and their dependencies are left out. Mappings are one line per prefix and warnings
+ * one line per artifact, with the artifacts sorted and separated by commas.
+ */
+public class CompactTreeReporter extends WriterReporter {
+  public CompactTreeReporter(OutputStream output) {
+    super(output);
+  }
+
+  public CompactTreeReporter(Writer writer) {
+    super(writer);
+  }
+
+  @Override
+  public void dependency(int depth, int line, ArtifactContainer artifact) {
+    writeSpaces(2 * depth);
+    write(artifact.getCoordinate().toString());
+    write('\n');
+  }
+
+  @Override
+  public void repeatedDependency(int depth, int line, ArtifactContainer artifact) {
+    writeSpaces(2 * depth);
+    write(artifact.getCoordinate().toString());
+    write(" *\n");
+  }
+
+  @Override
+  public void mapping(ArtifactContainer artifact, String prefix, Set<String> providers) {
+    write("mapping ");
+    write(artifact.getCoordinate().toString());
+    write(' ');
+    write(prefix);
+    writeNames(providers.stream());
+  }
+
+  @Override
+  public void unusedDependencies(ArtifactContainer artifact, Set<ArtifactContainer> unused) {
+    writeWarning("unused ", artifact, unused, ArtifactContainer::getArtifactName);
+  }
+
+  @Override
+  public void undeclaredDependencies(ArtifactContainer artifact, Set<ArtifactContainer> undeclared) {
+    writeWarning("undeclared ", artifact, undeclared, container -> container.getCoordinate().toString());
+  }
+
+  private void writeWarning(String kind, ArtifactContainer artifact, Set<ArtifactContainer> dependencies,
+                            Function<ArtifactContainer, String> name) {
+    write(kind);
+    write(artifact.getCoordinate().toString());
+    writeNames(dependencies.stream().map(name));
+  }
+
+  private void writeNames(Stream<String> names) {
+    List<String> sorted = names.distinct().sorted().collect(Collectors.toList());
+    for (int i = 0; i < sorted.size(); i++) {
+      write(i == 0 ? ' ' : ',');
+      write(sorted.get(i));
+    }
+    write('\n');
+  }
+}
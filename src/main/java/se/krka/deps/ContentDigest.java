@@ -0,0 +1,101 @@
+package se.krka.deps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SHA-256 of the content an artifact is analyzed from, which identifies a snapshot in the {@link ArtifactCache}
+ * instead of its coordinate.
+ */
+class ContentDigest {
+  private final MessageDigest digest;
+
+  ContentDigest() {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Adds a jar file, or the class and jar files of a directory. The digests of class files that
+   * haven't changed since the manifest was saved are taken from the manifest instead of reading them.
+   */
+  ContentDigest addFile(File file, ClassManifest manifest) {
+    try {
+      if (file.isDirectory()) {
+        addDirectory(file.toPath(), manifest);
+      } else if (file.isFile()) {
+        addBytes(digestFile(file));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return this;
+  }
+
+  ContentDigest addString(String value) {
+    addBytes(value.getBytes(StandardCharsets.UTF_8));
+    return this;
+  }
+
+  ContentDigest addBytes(byte[] bytes) {
+    // Length prefixed, so that the boundaries between values are part of the digest
+    digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+    digest.update(bytes);
+    return this;
+  }
+
+  byte[] finish() {
+    return digest.digest();
+  }
+
+  private void addDirectory(Path root, ClassManifest manifest) throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(root)) {
+      files = stream
+              .filter(path -> path.toString().endsWith(".class") || path.toString().endsWith(".jar"))
+              .filter(Files::isRegularFile)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    for (Path path : files) {
+      String relativePath = root.relativize(path).toString();
+      File file = path.toFile();
+      ClassManifest.Entry entry = manifest != null ? manifest.get(relativePath) : null;
+      addString(relativePath);
+      if (entry != null && manifest.isUnchanged(entry, file.length(), ClassManifest.getLastModified(file))) {
+        addBytes(entry.getDigest());
+      } else {
+        addBytes(digestFile(file));
+      }
+    }
+  }
+
+  private static byte[] digestFile(File file) throws IOException {
+    if (file.getName().endsWith(".class")) {
+      // Same digest as the manifest entries
+      return ClassManifest.digest(Files.readAllBytes(file.toPath()));
+    }
+    ContentDigest digest = new ContentDigest();
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream input = new FileInputStream(file)) {
+      int count;
+      while ((count = input.read(buffer)) > 0) {
+        digest.digest.update(buffer, 0, count);
+      }
+    }
+    return digest.finish();
+  }
+}
@@ -101,6 +101,10 @@ public class Coordinate {
     String version = object.getString("version");
     String packagingType = object.getString("packaging_type");
     String classifier = object.getString("classifier");
+    return of(groupId, artifactId, version, packagingType, classifier);
+  }
+
+  static Coordinate of(String groupId, String artifactId, String version, String packagingType, String classifier) {
     return new Coordinate(groupId, artifactId, version, PackagingType.of(packagingType), classifier);
   }
 
@@ -1,6 +1,7 @@
 package se.krka.deps;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class CyclicalDependencyException extends RuntimeException {
   private final ArrayList<Coordinate> coordinates = new ArrayList<>();
@@ -14,6 +15,10 @@ public class CyclicalDependencyException extends RuntimeException {
     coordinates.add(coordinate);
   }
 
+  List<Coordinate> getCoordinates() {
+    return coordinates;
+  }
+
   @Override
   public String getMessage() {
     return super.getMessage() + coordinates;
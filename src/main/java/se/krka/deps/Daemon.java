@@ -0,0 +1,398 @@
+package se.krka.deps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps resolved dependency graphs in memory and serves requests from {@link DaemonClient} over a socket
+ * on the loopback interface. The port and a random token that clients must send are written to a state
+ * file that only the current user can read.
+ *
+ * One request per connection, as lines of UTF-8:
+ * <pre>
+ * request:  token, command (analyze, tree, unused, undeclared or stop), target (coordinate or pom file),
+ *           and optionally the format of the output (text, jsonl or compact, see {@link Reporter#forFormat})
+ * response: OK or ERROR and a message, followed by the output
+ * </pre>
+ *
+ * The graph of a project is created again when any pom file or build output of its modules has changed,
+ * and a graph with snapshots from the local repository in it is created again for every request. Both
+ * are cheap as long as the artifacts are in the {@link ArtifactCache}. Concurrent requests for a target
+ * share the graph that the first of them creates.
+ *
+ * Like {@link Main}, unused and undeclared report the roots only: the modules of a project, or the
+ * artifact of a coordinate. Their dependencies are only reported as part of the tree.
+ *
+ * Once a graph has been evicted, a new {@link SymbolTable} epoch is started as soon as no request
+ * is running, and the {@link MemoryCache} is cleared. Class names, coordinates and provider sets that
+ * only evicted graphs used are then reclaimed once the graphs created in the old epoch are gone too.
+ *
+ * The daemon exits once it has been idle for -Ddeps.daemon.idle.minutes (default 180).
+ */
+public class Daemon {
+  private static final Logger logger = LoggerFactory.getLogger(Daemon.class);
+
+  // Number of targets to keep the graph of
+  private static final int MAX_TARGETS = Integer.getInteger("deps.daemon.targets", 16);
+
+  private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(Long.getLong("deps.daemon.idle.minutes", 180));
+
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  private final File stateFile;
+  private final int maxTargets;
+  private final String token = createToken();
+  private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "deps-daemon-" + THREAD_COUNTER.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Map of target -> analysis, least recently used first
+  private final Map<String, Analysis> analyses = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Analysis> eldest) {
+      if (size() > maxTargets) {
+        evicted = true;
+        return true;
+      }
+      return false;
+    }
+  };
+
+  // Map of target -> analysis that is being created
+  private final Map<String, CompletableFuture<Analysis>> pending = new ConcurrentHashMap<>();
+
+  // Held by each request, and exclusively to start a new symbol epoch
+  private final ReadWriteLock epochLock = new ReentrantReadWriteLock();
+
+  // Set when a graph has been evicted since the current symbol epoch started
+  private volatile boolean evicted;
+
+  private volatile ServerSocket serverSocket;
+
+  Daemon(File stateFile) {
+    this(stateFile, MAX_TARGETS);
+  }
+
+  Daemon(File stateFile, int maxTargets) {
+    this.stateFile = stateFile;
+    this.maxTargets = maxTargets;
+  }
+
+  public static void main(String[] args) throws IOException {
+    new Daemon(DaemonClient.getStateFile()).run();
+  }
+
+  /**
+   * Serves requests until stopped or idle.
+   */
+  void run() throws IOException {
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout((int) Math.min(IDLE_TIMEOUT, Integer.MAX_VALUE));
+      serverSocket = server;
+      writeStateFile(server.getLocalPort());
+      logger.info("Listening on port {}", server.getLocalPort());
+      while (true) {
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException e) {
+          logger.info("Stopping after being idle for {} ms", IDLE_TIMEOUT);
+          break;
+        } catch (SocketException e) {
+          if (server.isClosed()) {
+            // Stopped by a request
+            break;
+          }
+          throw e;
+        }
+        executor.execute(() -> handle(socket));
+      }
+    } finally {
+      deleteStateFile();
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (Socket ignored = socket;
+         BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+         OutputStream output = socket.getOutputStream()) {
+      String requestToken = reader.readLine();
+      String command = reader.readLine();
+      String target = reader.readLine();
+      String format = reader.readLine();
+      if (requestToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8))) {
+        logger.warn("Ignoring request with an invalid token");
+        return;
+      }
+
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      String status;
+      try {
+        long start = System.nanoTime();
+        execute(command, target, Reporter.forFormat(format == null || format.isEmpty() ? "text" : format, buffer));
+        logger.info("Finished {} {} in {} ms", command, target, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        status = "OK";
+      } catch (RuntimeException e) {
+        logger.warn("Failed {} {}", command, target, e);
+        status = "ERROR " + String.valueOf(e.getMessage()).replace('\n', ' ');
+      }
+      output.write((status + "\n").getBytes(StandardCharsets.UTF_8));
+      buffer.writeTo(output);
+    } catch (IOException e) {
+      logger.warn("Could not serve request", e);
+    }
+  }
+
+  void execute(String command, String target, Reporter reporter) {
+    epochLock.readLock().lock();
+    try {
+      executeCommand(command, target, reporter);
+    } finally {
+      epochLock.readLock().unlock();
+    }
+    startEpochIfEvicted();
+  }
+
+  private void startEpochIfEvicted() {
+    // Requests that are running keep using the current epoch, the next idle request starts it
+    if (!evicted || !epochLock.writeLock().tryLock()) {
+      return;
+    }
+    try {
+      if (evicted) {
+        evicted = false;
+        MemoryCache.getDefault().clear();
+        SymbolTable.startEpoch();
+        logger.info("Started a new symbol epoch after evicting graphs");
+      }
+    } finally {
+      epochLock.writeLock().unlock();
+    }
+  }
+
+  private void executeCommand(String command, String target, Reporter reporter) {
+    if ("stop".equals(command)) {
+      logger.info("Stopping");
+      stop();
+      return;
+    }
+    if (command == null || target == null || target.isEmpty()) {
+      throw new IllegalArgumentException("Expected a command and a target");
+    }
+    switch (command) {
+      case "analyze":
+        Resolver resolver = getResolver(target);
+        resolver.reportDependencyTree(reporter);
+        resolver.getRoots().forEach(root -> root.reportUnusedDependencies(reporter));
+        resolver.getRoots().forEach(root -> root.reportUndeclaredDependencies(reporter));
+        break;
+      case "tree":
+        getResolver(target).reportDependencyTree(reporter);
+        break;
+      case "unused":
+        getResolver(target).getRoots().forEach(root -> root.reportUnusedDependencies(reporter));
+        break;
+      case "undeclared":
+        getResolver(target).getRoots().forEach(root -> root.reportUndeclaredDependencies(reporter));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+  }
+
+  void stop() {
+    try {
+      ServerSocket server = serverSocket;
+      if (server != null) {
+        server.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Resolver getResolver(String target) {
+    Analysis analysis;
+    synchronized (analyses) {
+      analysis = analyses.get(target);
+    }
+    if (analysis != null && analysis.isCurrent()) {
+      return analysis.resolver;
+    }
+    if (analysis != null) {
+      logger.info("{} has changed", target);
+    }
+
+    CompletableFuture<Analysis> future = new CompletableFuture<>();
+    CompletableFuture<Analysis> existing = pending.putIfAbsent(target, future);
+    if (existing != null) {
+      return await(existing).resolver;
+    }
+    try {
+      Analysis latest;
+      synchronized (analyses) {
+        latest = analyses.get(target);
+      }
+      // Created by another request since this one looked
+      Analysis created = latest != null && latest != analysis ? latest : createAnalysis(target);
+      synchronized (analyses) {
+        analyses.put(target, created);
+      }
+      future.complete(created);
+      return created.resolver;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      pending.remove(target, future);
+    }
+  }
+
+  private static Analysis createAnalysis(String target) {
+    File file = new File(target);
+    if (!file.exists()) {
+      return new Analysis(Resolver.createFromCoordinate(target), Map.of());
+    }
+    Resolver resolver = Resolver.forBuiltProject(file.isDirectory() ? new File(file, "pom.xml").getPath() : file.getPath());
+    // Taken before scanning, so that a change during the scan makes the next request create it again
+    Map<Path, String> fingerprint = fingerprint(resolver.getProjectFiles());
+    resolver.resolveModules();
+    return new Analysis(resolver, fingerprint);
+  }
+
+  private static Analysis await(CompletableFuture<Analysis> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return the size and modification time of the files, and of all files in the directories among them
+   */
+  static Map<Path, String> fingerprint(List<File> files) {
+    Map<Path, String> fingerprint = new HashMap<>();
+    for (File file : files) {
+      try (Stream<Path> paths = Files.walk(file.toPath())) {
+        paths.forEach(path -> {
+          try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+              fingerprint.put(path, attributes.size() + "@" + attributes.lastModifiedTime());
+            }
+          } catch (NoSuchFileException e) {
+            // Deleted while walking, it doesn't matter since it's gone now
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        });
+      } catch (NoSuchFileException e) {
+        fingerprint.put(file.toPath(), "missing");
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return fingerprint;
+  }
+
+  private void writeStateFile(int port) throws IOException {
+    Path target = stateFile.toPath();
+    Files.createDirectories(target.getParent());
+    Path tempFile = Files.createTempFile(target.getParent(), stateFile.getName(), ".tmp");
+    try {
+      try {
+        Files.setPosixFilePermissions(tempFile, PosixFilePermissions.fromString("rw-------"));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system
+      }
+      Files.write(tempFile, (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+      Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private void deleteStateFile() {
+    try {
+      // Another daemon may have been started since
+      List<String> lines = Files.readAllLines(stateFile.toPath(), StandardCharsets.UTF_8);
+      if (lines.size() >= 2 && lines.get(1).equals(token)) {
+        Files.delete(stateFile.toPath());
+      }
+    } catch (IOException e) {
+      logger.debug("Could not delete {}: {}", stateFile, e.getMessage());
+    }
+  }
+
+  private static String createToken() {
+    byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder builder = new StringBuilder();
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  private static class Analysis {
+    private final Resolver resolver;
+
+    // Project files when the resolver was created
+    private final Map<Path, String> fingerprint;
+
+    // Snapshots other than the project modules may have changed in the local repository
+    private final boolean hasSnapshots;
+
+    Analysis(Resolver resolver, Map<Path, String> fingerprint) {
+      this.resolver = resolver;
+      this.fingerprint = fingerprint;
+      this.hasSnapshots = resolver.getArtifacts().keySet().stream()
+              .anyMatch(coordinate -> coordinate.isSnapshot() && !resolver.isModule(coordinate));
+    }
+
+    boolean isCurrent() {
+      return !hasSnapshots && fingerprint.equals(fingerprint(resolver.getProjectFiles()));
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package se.krka.deps;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a request to the {@link Daemon}, starting it first if it isn't running.
+ * It only depends on the JDK, so that it starts quickly.
+ *
+ * <pre>
+ * DaemonClient [--format=text|jsonl|compact] (analyze|tree|unused|undeclared) (coordinate|pom file|project directory)
+ * DaemonClient stop
+ * </pre>
+ *
+ * unused and undeclared only report the target itself, or each module of a project, like {@link Main} does.
+ */
+public class DaemonClient {
+  private static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    String format = "text";
+    if (args.length > 0 && args[0].startsWith("--format=")) {
+      format = args[0].substring("--format=".length());
+      args = Arrays.copyOfRange(args, 1, args.length);
+    }
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: DaemonClient [--format=text|jsonl|compact] (analyze|tree|unused|undeclared) target, or DaemonClient stop");
+      System.err.println("unused and undeclared only report the target, or each module of a project, not their dependencies");
+      System.exit(2);
+    }
+    String command = args[0];
+    String target = args.length > 1 ? args[1] : "";
+    if (!target.isEmpty() && new File(target).exists()) {
+      // The daemon has a different working directory
+      target = new File(target).getAbsolutePath();
+    }
+
+    File stateFile = getStateFile();
+    String response = send(stateFile, command, target, format);
+    if (response == null) {
+      if (command.equals("stop")) {
+        return;
+      }
+      response = startAndSend(stateFile, command, target, format);
+    }
+
+    int end = response.indexOf('\n');
+    String status = end < 0 ? response : response.substring(0, end);
+    System.out.print(response.substring(end + 1));
+    if (!status.equals("OK")) {
+      System.err.println(status);
+      System.exit(1);
+    }
+  }
+
+  static File getStateFile() {
+    // Same as ArtifactCache.getDefaultDirectory(), without initializing the cache and logging
+    File directory = Paths.get(System.getProperty("user.home"), ".m2", "repository", "dependency-data").toFile();
+    return new File(directory, "daemon.state");
+  }
+
+  /**
+   * @return the response, starting with a status line, or null if no daemon is running
+   */
+  static String send(File stateFile, String command, String target, String format) throws IOException {
+    List<String> state;
+    try {
+      state = Files.readAllLines(stateFile.toPath(), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (state.size() < 2) {
+      return null;
+    }
+    int port = Integer.parseInt(state.get(0));
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      OutputStream output = socket.getOutputStream();
+      output.write((state.get(1) + "\n" + command + "\n" + target + "\n" + format + "\n").getBytes(StandardCharsets.UTF_8));
+      output.flush();
+
+      StringBuilder response = new StringBuilder();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      char[] buffer = new char[8192];
+      int count;
+      while ((count = reader.read(buffer)) > 0) {
+        response.append(buffer, 0, count);
+      }
+      return response.length() > 0 ? response.toString() : null;
+    } catch (ConnectException e) {
+      // Left behind by a daemon that didn't exit cleanly
+      return null;
+    }
+  }
+
+  private static String startAndSend(File stateFile, String command, String target, String format) throws IOException, InterruptedException {
+    Files.createDirectories(stateFile.toPath().getParent());
+    File lockFile = new File(stateFile.getParentFile(), stateFile.getName() + ".lock");
+    try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock ignored = channel.lock()) {
+      // Another client may have started it while we were waiting for the lock
+      String response = send(stateFile, command, target, format);
+      if (response != null) {
+        return response;
+      }
+
+      Files.deleteIfExists(stateFile.toPath());
+      startDaemon(new File(stateFile.getParentFile(), "daemon.log"));
+      long deadline = System.currentTimeMillis() + START_TIMEOUT;
+      while (!stateFile.exists()) {
+        if (System.currentTimeMillis() > deadline) {
+          throw new IOException("The daemon did not start, see " + new File(stateFile.getParentFile(), "daemon.log"));
+        }
+        Thread.sleep(50);
+      }
+    }
+    String response = send(stateFile, command, target, format);
+    if (response == null) {
+      throw new IOException("Could not connect to the daemon");
+    }
+    return response;
+  }
+
+  private static void startDaemon(File logFile) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("deps.") || name.equals("maven.repo.local")) {
+        command.add("-D" + name + "=" + System.getProperty(name));
+      }
+    }
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(Daemon.class.getName());
+    new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+            .start();
+  }
+}
@@ -0,0 +1,62 @@
+package se.krka.deps;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores each entry in a file of its own.
+ *
+ * Entries are written to a temporary file that is then renamed over the entry,
+ * so concurrent readers never see a partially written file.
+ */
+class DirectoryStore implements CacheStore {
+  private final File dir;
+  private final KeyLocks locks;
+
+  DirectoryStore(File dir) {
+    this.dir = dir;
+    if (!dir.exists()) {
+      if (!dir.mkdirs()) {
+        throw new RuntimeException("Could not create directory: " + dir);
+      }
+    }
+    if (!dir.isDirectory()) {
+      throw new RuntimeException("Expected a directory: " + dir);
+    }
+    this.locks = KeyLocks.forFile(new File(dir, "entries.lock").toPath());
+  }
+
+  @Override
+  public byte[] read(String key) throws IOException {
+    try {
+      return Files.readAllBytes(getFile(key).toPath());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void write(String key, byte[] data) throws IOException {
+    Path tempFile = Files.createTempFile(dir.toPath(), key, ".tmp");
+    try {
+      Files.write(tempFile, data);
+      Files.move(tempFile, getFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  @Override
+  public Closeable lock(String key) throws IOException {
+    return locks.lock(key);
+  }
+
+  private File getFile(String key) {
+    return new File(dir, key + ".deps");
+  }
+}
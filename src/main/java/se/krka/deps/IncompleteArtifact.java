@@ -1,6 +1,5 @@
 package se.krka.deps;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -13,6 +12,12 @@ class IncompleteArtifact {
   private final Set<String> unused;
   private final Set<String> undeclared;
 
+  // Filter over definedClasses, or null
+  private final ClassFilter classFilter;
+
+  // Digest of the content a snapshot was analyzed from, or null
+  private final byte[] contentDigest;
+
   IncompleteArtifact(
           Coordinate coordinate,
           Set<Coordinate> dependencies,
@@ -20,6 +25,29 @@ class IncompleteArtifact {
           Map<String, Set<String>> mappings,
           Set<String> unused,
           Set<String> undeclared) {
+    this(coordinate, dependencies, definedClasses, mappings, unused, undeclared, null);
+  }
+
+  IncompleteArtifact(
+          Coordinate coordinate,
+          Set<Coordinate> dependencies,
+          Set<String> definedClasses,
+          Map<String, Set<String>> mappings,
+          Set<String> unused,
+          Set<String> undeclared,
+          ClassFilter classFilter) {
+    this(coordinate, dependencies, definedClasses, mappings, unused, undeclared, classFilter, null);
+  }
+
+  IncompleteArtifact(
+          Coordinate coordinate,
+          Set<Coordinate> dependencies,
+          Set<String> definedClasses,
+          Map<String, Set<String>> mappings,
+          Set<String> unused,
+          Set<String> undeclared,
+          ClassFilter classFilter,
+          byte[] contentDigest) {
 
     this.coordinate = coordinate;
     this.dependencies = dependencies;
@@ -27,22 +55,75 @@ class IncompleteArtifact {
     this.mappings = mappings;
     this.unused = unused;
     this.undeclared = undeclared;
+    this.classFilter = classFilter;
+    this.contentDigest = contentDigest;
+  }
+
+  static IncompleteArtifact of(ArtifactContainer container) {
+    return of(container, null);
+  }
+
+  static IncompleteArtifact of(ArtifactContainer container, byte[] contentDigest) {
+    Set<Coordinate> dependencies = container.getDependencies().stream()
+            .map(ArtifactContainer::getCoordinate)
+            .collect(Collectors.toSet());
+    return new IncompleteArtifact(
+            container.getCoordinate(),
+            dependencies,
+            container.getDefinedClasses(),
+            container.getMappings(),
+            getNames(container.getUnusedDependencies()),
+            getNames(container.getUndeclared()),
+            container.getClassFilter(),
+            contentDigest);
+  }
+
+  private static Set<String> getNames(Set<ArtifactContainer> containers) {
+    return containers.stream().map(ArtifactContainer::getArtifactName).collect(Collectors.toSet());
+  }
+
+  Coordinate getCoordinate() {
+    return coordinate;
   }
 
   Set<Coordinate> getDependencies() {
     return dependencies;
   }
 
+  Set<String> getDefinedClasses() {
+    return definedClasses;
+  }
+
+  Map<String, Set<String>> getMappings() {
+    return mappings;
+  }
+
+  Set<String> getUnused() {
+    return unused;
+  }
+
+  Set<String> getUndeclared() {
+    return undeclared;
+  }
+
+  ClassFilter getClassFilter() {
+    return classFilter;
+  }
+
+  byte[] getContentDigest() {
+    return contentDigest;
+  }
+
   ArtifactContainer complete(Set<ArtifactContainer> dependencies) {
-    HashSet<ArtifactContainer> flattenedDependencies = new HashSet<>(dependencies);
-    for (ArtifactContainer dependency : dependencies) {
-      flattenedDependencies.addAll(dependency.getFlattenedDependencies());
-    }
+    return complete(dependencies, null);
+  }
 
+  ArtifactContainer complete(Set<ArtifactContainer> dependencies, ArtifactIndex artifactIndex) {
+    Set<ArtifactContainer> flattenedDependencies = ArtifactSet.flatten(artifactIndex, dependencies);
     Set<ArtifactContainer> unusedDependencies = filter(dependencies, unused);
-    Set<ArtifactContainer> undeclaredDependencies = filter(dependencies, undeclared);
-    return new ArtifactContainer(coordinate, dependencies, flattenedDependencies,
-            unusedDependencies, definedClasses, mappings, undeclaredDependencies);
+    Set<ArtifactContainer> undeclaredDependencies = filter(flattenedDependencies, undeclared);
+    return ArtifactContainer.create(artifactIndex, id -> new ArtifactContainer(coordinate, dependencies, flattenedDependencies,
+            unusedDependencies, definedClasses, mappings, undeclaredDependencies, classFilter, artifactIndex, id));
   }
 
   private static Set<ArtifactContainer> filter(Set<ArtifactContainer> dependencies, Set<String> names) {
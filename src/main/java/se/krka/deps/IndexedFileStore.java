@@ -0,0 +1,262 @@
+package se.krka.deps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores all entries in one append-only data file, which is memory mapped for reading.
+ *
+ * <pre>
+ * record: int magic, int key length, int data length, key (UTF-8), data
+ * </pre>
+ *
+ * An in-memory hash index of key -> position of its latest record is built by scanning the
+ * record headers when the file is opened. Writing a key again appends a new record, and
+ * compaction rewrites the file with only the latest record of each key once most of it is garbage.
+ *
+ * Appends and compaction hold an exclusive lock on a separate lock file, so several processes
+ * can share the store. Records appended by other processes are picked up on a miss.
+ */
+class IndexedFileStore implements CacheStore {
+  private static final Logger logger = LoggerFactory.getLogger(IndexedFileStore.class);
+
+  private static final int RECORD_MAGIC = 0x44524543;
+  private static final int HEADER_SIZE = 12;
+
+  // Don't compact files smaller than this
+  private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+  // File locks are held per JVM, so there must only be one instance per file
+  private static final Map<Path, IndexedFileStore> STORES = new ConcurrentHashMap<>();
+
+  private final Path dataFile;
+  private final Path lockFile;
+  private final KeyLocks keyLocks;
+
+  // Map of key -> position of its latest record
+  private final Map<String, Long> index = new HashMap<>();
+
+  private FileChannel channel;
+  private Object fileKey;
+  private MappedByteBuffer mapping;
+
+  // Position after the last complete record that has been indexed
+  private long scannedEnd;
+
+  // Total size of the records in the index
+  private long liveBytes;
+
+  private IndexedFileStore(Path dataFile) {
+    this.dataFile = dataFile;
+    this.lockFile = dataFile.resolveSibling(dataFile.getFileName() + ".lock");
+    this.keyLocks = KeyLocks.forFile(dataFile.resolveSibling(dataFile.getFileName() + ".keys.lock"));
+  }
+
+  static IndexedFileStore open(File file) {
+    Path path = file.toPath().toAbsolutePath().normalize();
+    return STORES.computeIfAbsent(path, key -> {
+      IndexedFileStore store = new IndexedFileStore(key);
+      try {
+        store.initialize();
+      } catch (IOException e) {
+        throw new RuntimeException("Could not open " + key, e);
+      }
+      return store;
+    });
+  }
+
+  private synchronized void initialize() throws IOException {
+    Files.createDirectories(dataFile.getParent());
+    try (FileChannel lockChannel = openLockChannel(); FileLock ignored = lockChannel.lock()) {
+      reopen();
+      truncateTornRecord();
+      if (channel.size() > MIN_COMPACTION_SIZE && 2 * liveBytes < channel.size()) {
+        compactLocked();
+      }
+    }
+  }
+
+  @Override
+  public synchronized byte[] read(String key) throws IOException {
+    Long position = index.get(key);
+    if (position == null) {
+      // Someone else may have written it since we last looked
+      try (FileChannel lockChannel = openLockChannel(); FileLock ignored = lockChannel.lock(0, Long.MAX_VALUE, true)) {
+        refresh();
+      }
+      position = index.get(key);
+      if (position == null) {
+        return null;
+      }
+    }
+    return readData(position);
+  }
+
+  @Override
+  public synchronized void write(String key, byte[] data) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + data.length);
+    record.putInt(RECORD_MAGIC).putInt(keyBytes.length).putInt(data.length).put(keyBytes).put(data).flip();
+
+    try (FileChannel lockChannel = openLockChannel(); FileLock ignored = lockChannel.lock()) {
+      refresh();
+      truncateTornRecord();
+      long position = scannedEnd;
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+      addRecord(key, scannedEnd, record.limit());
+      scannedEnd = position;
+    }
+  }
+
+  @Override
+  public Closeable lock(String key) throws IOException {
+    return keyLocks.lock(key);
+  }
+
+  /**
+   * Rewrites the data file with only the latest record of each key.
+   */
+  synchronized void compact() throws IOException {
+    try (FileChannel lockChannel = openLockChannel(); FileLock ignored = lockChannel.lock()) {
+      refresh();
+      compactLocked();
+    }
+  }
+
+  private void compactLocked() throws IOException {
+    long before = channel.size();
+    Path tempFile = dataFile.resolveSibling(dataFile.getFileName() + ".compact");
+    try (FileChannel output = FileChannel.open(tempFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (long position : index.values()) {
+        int length = getRecordLength(position);
+        ByteBuffer record = mapping.duplicate();
+        record.position((int) position);
+        record.limit((int) position + length);
+        while (record.hasRemaining()) {
+          output.write(record);
+        }
+      }
+      output.force(true);
+    }
+    Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    reopen();
+    logger.info("Compacted {} from {} to {} bytes", dataFile, before, channel.size());
+  }
+
+  private void refresh() throws IOException {
+    if (!Objects.equals(fileKey, readFileKey())) {
+      // Compacted by another process
+      reopen();
+    } else {
+      scan();
+    }
+  }
+
+  private void reopen() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    fileKey = readFileKey();
+    mapping = null;
+    index.clear();
+    scannedEnd = 0;
+    liveBytes = 0;
+    scan();
+  }
+
+  private void scan() throws IOException {
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Too large to map: " + dataFile);
+    }
+    remap(size);
+    long position = scannedEnd;
+    while (position + HEADER_SIZE <= size) {
+      if (mapping.getInt((int) position) != RECORD_MAGIC) {
+        break;
+      }
+      int keyLength = mapping.getInt((int) position + 4);
+      int dataLength = mapping.getInt((int) position + 8);
+      long length = (long) HEADER_SIZE + keyLength + dataLength;
+      if (keyLength < 0 || dataLength < 0 || position + length > size) {
+        break;
+      }
+      byte[] keyBytes = new byte[keyLength];
+      ByteBuffer key = mapping.duplicate();
+      key.position((int) position + HEADER_SIZE);
+      key.get(keyBytes);
+      addRecord(new String(keyBytes, StandardCharsets.UTF_8), position, (int) length);
+      position += length;
+    }
+    scannedEnd = position;
+  }
+
+  private void truncateTornRecord() throws IOException {
+    if (scannedEnd < channel.size()) {
+      logger.warn("Truncating incomplete record at {} in {}", scannedEnd, dataFile);
+      channel.truncate(scannedEnd);
+    }
+  }
+
+  private void addRecord(String key, long position, int length) {
+    Long previous = index.put(key, position);
+    if (previous != null) {
+      liveBytes -= getRecordLength(previous);
+    }
+    liveBytes += length;
+  }
+
+  private byte[] readData(long position) throws IOException {
+    remap(scannedEnd);
+    int keyLength = mapping.getInt((int) position + 4);
+    int dataLength = mapping.getInt((int) position + 8);
+    byte[] data = new byte[dataLength];
+    ByteBuffer buffer = mapping.duplicate();
+    buffer.position((int) position + HEADER_SIZE + keyLength);
+    buffer.get(data);
+    return data;
+  }
+
+  private int getRecordLength(long position) {
+    return HEADER_SIZE + mapping.getInt((int) position + 4) + mapping.getInt((int) position + 8);
+  }
+
+  private void remap(long size) throws IOException {
+    if (mapping == null || mapping.capacity() < size) {
+      mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  private Object readFileKey() throws IOException {
+    if (!Files.exists(dataFile)) {
+      return null;
+    }
+    return Files.readAttributes(dataFile, BasicFileAttributes.class).fileKey();
+  }
+
+  private FileChannel openLockChannel() throws IOException {
+    return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+}
@@ -0,0 +1,100 @@
+package se.krka.deps;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open addressing hash set of non-negative ints.
+ */
+class IntHashSet {
+  private static final int EMPTY = -1;
+
+  private int[] slots = newSlots(16);
+  private int size;
+
+  boolean add(int value) {
+    if (2 * (size + 1) > slots.length) {
+      rehash(2 * slots.length);
+    }
+    int mask = slots.length - 1;
+    int index = mix(value) & mask;
+    while (slots[index] != EMPTY) {
+      if (slots[index] == value) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    slots[index] = value;
+    size++;
+    return true;
+  }
+
+  boolean contains(int value) {
+    int mask = slots.length - 1;
+    int index = mix(value) & mask;
+    while (slots[index] != EMPTY) {
+      if (slots[index] == value) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  void addAll(IntHashSet other) {
+    for (int value : other.slots) {
+      if (value != EMPTY) {
+        add(value);
+      }
+    }
+  }
+
+  void forEach(IntConsumer consumer) {
+    for (int value : slots) {
+      if (value != EMPTY) {
+        consumer.accept(value);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the values of this set, in ascending order
+   */
+  int[] toSortedArray() {
+    int[] values = new int[size];
+    int i = 0;
+    for (int value : slots) {
+      if (value != EMPTY) {
+        values[i++] = value;
+      }
+    }
+    Arrays.sort(values);
+    return values;
+  }
+
+  private void rehash(int capacity) {
+    int[] old = slots;
+    slots = newSlots(capacity);
+    size = 0;
+    for (int value : old) {
+      if (value != EMPTY) {
+        add(value);
+      }
+    }
+  }
+
+  private static int[] newSlots(int capacity) {
+    int[] slots = new int[capacity];
+    Arrays.fill(slots, EMPTY);
+    return slots;
+  }
+
+  private static int mix(int value) {
+    int h = value * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
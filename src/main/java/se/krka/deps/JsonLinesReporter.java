@@ -0,0 +1,109 @@
+package se.krka.deps;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * One JSON object per line, written as the results are walked:
+ *
+ * <pre>
+ * {"type":"dependency","depth":0,"line":1,"coordinate":"com.example:root:jar:1.0"}
+ * {"type":"repeated","depth":2,"line":4,"coordinate":"com.example:common:jar:1.0"}
+ * {"type":"mapping","coordinate":"com.example:root:jar:1.0","prefix":"com.example.common.*","providers":["com.example:common"]}
+ * {"type":"unused","coordinate":"com.example:root:jar:1.0","dependencies":["com.example:unused"]}
+ * {"type":"undeclared","coordinate":"com.example:root:jar:1.0","dependencies":["com.example:transitive:jar:1.0"]}
+ * </pre>
+ *
+ * Providers and unused dependencies are artifact names, undeclared dependencies are coordinates, all sorted.
+ */
+public class JsonLinesReporter extends WriterReporter {
+  public JsonLinesReporter(OutputStream output) {
+    super(output);
+  }
+
+  public JsonLinesReporter(Writer writer) {
+    super(writer);
+  }
+
+  @Override
+  public void dependency(int depth, int line, ArtifactContainer artifact) {
+    writeDependency("dependency", depth, line, artifact);
+  }
+
+  @Override
+  public void repeatedDependency(int depth, int line, ArtifactContainer artifact) {
+    writeDependency("repeated", depth, line, artifact);
+  }
+
+  @Override
+  public void mapping(ArtifactContainer artifact, String prefix, Set<String> providers) {
+    write("{\"type\":\"mapping\",\"coordinate\":");
+    writeString(artifact.getCoordinate().toString());
+    write(",\"prefix\":");
+    writeString(prefix);
+    write(",\"providers\":");
+    writeNames(providers.stream());
+    write("}\n");
+  }
+
+  @Override
+  public void unusedDependencies(ArtifactContainer artifact, Set<ArtifactContainer> unused) {
+    writeWarning("unused", artifact, unused, ArtifactContainer::getArtifactName);
+  }
+
+  @Override
+  public void undeclaredDependencies(ArtifactContainer artifact, Set<ArtifactContainer> undeclared) {
+    writeWarning("undeclared", artifact, undeclared, container -> container.getCoordinate().toString());
+  }
+
+  private void writeDependency(String type, int depth, int line, ArtifactContainer artifact) {
+    write("{\"type\":\"");
+    write(type);
+    write("\",\"depth\":");
+    write(Integer.toString(depth));
+    write(",\"line\":");
+    write(Integer.toString(line));
+    write(",\"coordinate\":");
+    writeString(artifact.getCoordinate().toString());
+    write("}\n");
+  }
+
+  private void writeWarning(String type, ArtifactContainer artifact, Set<ArtifactContainer> dependencies,
+                            Function<ArtifactContainer, String> name) {
+    write("{\"type\":\"");
+    write(type);
+    write("\",\"coordinate\":");
+    writeString(artifact.getCoordinate().toString());
+    write(",\"dependencies\":");
+    writeNames(dependencies.stream().map(name));
+    write("}\n");
+  }
+
+  private void writeNames(Stream<String> names) {
+    List<String> sorted = names.distinct().sorted().collect(Collectors.toList());
+    write('[');
+    for (int i = 0; i < sorted.size(); i++) {
+      if (i > 0) {
+        write(',');
+      }
+      writeString(sorted.get(i));
+    }
+    write(']');
+  }
+
+  private void writeString(String value) {
+    try {
+      JSONObject.quote(value, getWriter());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
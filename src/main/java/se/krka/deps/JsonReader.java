@@ -14,7 +14,7 @@ class JsonReader {
 
     Coordinate coordinate = readCoordinate(object.getJSONObject("coordinate"));
 
-    Set<String> definedClasses = readSet(object.getJSONArray("classes"));
+    Set<String> definedClasses = readSymbols(object.getJSONArray("classes"));
     Map<String, Set<String>> mappings = readMappings(object.getJSONObject("usages"));
 
     Set<String> unused = readSet(object.getJSONArray("unused"));
@@ -48,7 +48,7 @@ class JsonReader {
   }
 
   private static Coordinate readCoordinate(JSONObject coordinate) {
-    return Coordinate.fromJson(coordinate);
+    return SymbolTable.getDefault().intern(Coordinate.fromJson(coordinate));
   }
 
   private static Map<String, Set<String>> readMappings(JSONObject usages) {
@@ -56,11 +56,30 @@ class JsonReader {
     Iterator<String> iterator = usages.keys();
     while (iterator.hasNext()) {
       String key = iterator.next();
-      mappings.put(key, readSet(usages.getJSONArray(key)));
+      mappings.put(SymbolTable.getDefault().intern(key), readArtifactNames(usages.getJSONArray(key)));
     }
     return mappings;
   }
 
+  private static Set<String> readSymbols(JSONArray array) {
+    SymbolTable symbols = SymbolTable.getDefault();
+    return SymbolSet.of(symbols, readIds(symbols, array));
+  }
+
+  private static Set<String> readArtifactNames(JSONArray array) {
+    SymbolTable symbols = SymbolTable.getDefault();
+    return symbols.getSetPool().intern(readIds(symbols, array));
+  }
+
+  private static IntHashSet readIds(SymbolTable symbols, JSONArray array) {
+    IntHashSet ids = new IntHashSet();
+    int length = array.length();
+    for (int i = 0; i < length; i++) {
+      ids.add(symbols.getId(array.getString(i)));
+    }
+    return ids;
+  }
+
   private static Set<String> readSet(JSONArray array) {
     HashSet<String> set = new HashSet<>();
     int length = array.length();
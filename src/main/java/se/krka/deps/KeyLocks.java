@@ -0,0 +1,94 @@
+package se.krka.deps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks keys across threads and processes, using byte range locks on a shared lock file.
+ *
+ * Keys are hashed to a fixed number of stripes, so unrelated keys occasionally share a lock.
+ */
+class KeyLocks {
+  private static final int STRIPES = 4096;
+  private static final long MAX_SLEEP_MILLIS = 100;
+
+  // File locks are held per JVM, so there must only be one instance per file
+  private static final Map<Path, KeyLocks> LOCKS = new ConcurrentHashMap<>();
+
+  private final Path lockFile;
+
+  // Threads in this JVM must wait here, since a second file lock on the same range would fail
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+  private FileChannel channel;
+
+  private KeyLocks(Path lockFile) {
+    this.lockFile = lockFile;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  static KeyLocks forFile(Path lockFile) {
+    return LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), KeyLocks::new);
+  }
+
+  /**
+   * Blocks until the key is locked. The lock must be closed by the same thread.
+   */
+  Closeable lock(String key) throws IOException {
+    int stripe = Math.floorMod(key.hashCode(), STRIPES);
+    ReentrantLock lock = stripes[stripe];
+    lock.lock();
+    try {
+      FileLock fileLock = lockStripe(stripe);
+      return () -> {
+        try {
+          fileLock.release();
+        } finally {
+          lock.unlock();
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      lock.unlock();
+      throw e;
+    }
+  }
+
+  private FileLock lockStripe(int stripe) throws IOException {
+    // Blocking locks can't be used, the kernel detects deadlocks per process rather than
+    // per thread and fails when two processes each wait for a stripe the other one holds
+    long sleepMillis = 1;
+    while (true) {
+      FileLock fileLock = getChannel().tryLock(stripe, 1, false);
+      if (fileLock != null) {
+        return fileLock;
+      }
+      try {
+        Thread.sleep(sleepMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a lock on " + lockFile);
+      }
+      sleepMillis = Math.min(2 * sleepMillis, MAX_SLEEP_MILLIS);
+    }
+  }
+
+  private synchronized FileChannel getChannel() throws IOException {
+    // An interrupted thread closes the channel, and with it all the locks
+    if (channel == null || !channel.isOpen()) {
+      Files.createDirectories(lockFile.getParent());
+      channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    return channel;
+  }
+}
@@ -0,0 +1,69 @@
+package se.krka.deps;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Usage mappings that are only decoded from a cache entry when they are first needed.
+ */
+class LazyMappings extends AbstractMap<String, Set<String>> {
+  private final int size;
+
+  // Size of the encoded data that the decoder holds on to
+  private final long encodedSize;
+
+  // Decodes the mappings, or null once they have been decoded
+  private Supplier<Map<String, Set<String>>> decoder;
+
+  private volatile Map<String, Set<String>> mappings;
+
+  LazyMappings(int size, long encodedSize, Supplier<Map<String, Set<String>>> decoder) {
+    this.size = size;
+    this.encodedSize = encodedSize;
+    this.decoder = decoder;
+  }
+
+  private Map<String, Set<String>> get() {
+    Map<String, Set<String>> mappings = this.mappings;
+    if (mappings == null) {
+      synchronized (this) {
+        mappings = this.mappings;
+        if (mappings == null) {
+          mappings = decoder.get();
+          this.mappings = mappings;
+          decoder = null;
+        }
+      }
+    }
+    return mappings;
+  }
+
+  @Override
+  public Set<String> get(Object key) {
+    return get().get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get().containsKey(key);
+  }
+
+  @Override
+  public Set<Entry<String, Set<String>>> entrySet() {
+    return get().entrySet();
+  }
+
+  /**
+   * @return the size of the encoded data that is kept until it has been decoded
+   */
+  synchronized long getRetainedBytes() {
+    return decoder != null ? encodedSize : 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
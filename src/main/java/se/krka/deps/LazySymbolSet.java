@@ -0,0 +1,64 @@
+package se.krka.deps;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Set of names that is only decoded from a cache entry when its contents are first needed.
+ * The size is known up front, so size() and isEmpty() don't decode anything.
+ */
+class LazySymbolSet extends AbstractSet<String> {
+  private final int size;
+
+  // Size of the encoded data that the decoder holds on to
+  private final long encodedSize;
+
+  // Decodes the set, or null once it has been decoded
+  private Supplier<SymbolSet> decoder;
+
+  private volatile SymbolSet set;
+
+  LazySymbolSet(int size, long encodedSize, Supplier<SymbolSet> decoder) {
+    this.size = size;
+    this.encodedSize = encodedSize;
+    this.decoder = decoder;
+  }
+
+  SymbolSet get() {
+    SymbolSet set = this.set;
+    if (set == null) {
+      synchronized (this) {
+        set = this.set;
+        if (set == null) {
+          set = decoder.get();
+          this.set = set;
+          decoder = null;
+        }
+      }
+    }
+    return set;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return get().contains(o);
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return get().iterator();
+  }
+
+  /**
+   * @return the size of the encoded data that is kept until it has been decoded
+   */
+  synchronized long getRetainedBytes() {
+    return decoder != null ? encodedSize : 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,221 @@
+package se.krka.deps;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelCache;
+import org.apache.maven.model.building.ModelProblem;
+import org.apache.maven.model.building.ModelSource2;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.apache.maven.settings.building.DefaultSettingsBuilderFactory;
+import org.apache.maven.settings.building.DefaultSettingsBuildingRequest;
+import org.apache.maven.settings.building.SettingsBuildingException;
+import org.jboss.shrinkwrap.resolver.api.maven.PackagingType;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static java.lang.System.getProperty;
+
+/**
+ * Reads artifacts and their declared dependencies directly from the local Maven repository layout,
+ * without going through a repository session. Nothing is ever downloaded, so a missing file fails
+ * with a {@link MissingArtifactException} instead of being looked up remotely.
+ *
+ * The dependencies are the ones Maven would use for a transitive dependency: the compile and runtime
+ * scoped, non-optional dependencies of the effective POM, including parents and imported BOMs.
+ */
+class LocalRepository {
+  private static final ModelBuilder MODEL_BUILDER = new DefaultModelBuilderFactory().newInstance();
+
+  private static final Set<String> SCOPES = Set.of("compile", "runtime");
+
+  // How the model validator reports a dependency without a version, around its management key
+  private static final String MISSING_VERSION_PREFIX = "'dependencies.dependency.version' for ";
+  private static final String MISSING_VERSION_SUFFIX = " is missing.";
+
+  private final File directory;
+
+  // Parents and imported BOMs are shared by many artifacts, so keep them around
+  private final ModelCache modelCache = new ConcurrentModelCache();
+
+  LocalRepository(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Uses -Dmaven.repo.local, or else the local repository configured in ~/.m2/settings.xml.
+   */
+  static LocalRepository getDefault() {
+    String path = getProperty("maven.repo.local");
+    if (path == null) {
+      File userSettings = new File(new File(getProperty("user.home"), ".m2"), "settings.xml");
+      try {
+        path = new DefaultSettingsBuilderFactory().newInstance()
+                .build(new DefaultSettingsBuildingRequest()
+                        .setUserSettingsFile(userSettings)
+                        .setSystemProperties(System.getProperties()))
+                .getEffectiveSettings()
+                .getLocalRepository();
+      } catch (SettingsBuildingException e) {
+        throw new RuntimeException("Could not read " + userSettings, e);
+      }
+    }
+    if (path == null) {
+      path = new File(new File(getProperty("user.home"), ".m2"), "repository").getPath();
+    }
+    return new LocalRepository(new File(path));
+  }
+
+  File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return the artifact file, which must exist
+   */
+  File getFile(Coordinate coordinate) {
+    PackagingType packagingType = coordinate.getPackagingType();
+    return getExistingFile(coordinate, coordinate.getClassifier(), packagingType.getExtension());
+  }
+
+  Set<Coordinate> getDependencies(Coordinate coordinate) {
+    Model model = getModel(coordinate);
+    if (model.getDistributionManagement() != null && model.getDistributionManagement().getRelocation() != null) {
+      throw new IllegalStateException("Relocated artifacts can't be resolved offline: " + coordinate);
+    }
+    return model.getDependencies().stream()
+            .filter(dependency -> SCOPES.contains(dependency.getScope() == null ? "compile" : dependency.getScope()))
+            .filter(dependency -> !dependency.isOptional())
+            .map(dependency -> toCoordinate(coordinate, dependency))
+            .collect(Collectors.toSet());
+  }
+
+  /**
+   * @return the effective model of the artifact
+   */
+  Model getModel(Coordinate coordinate) {
+    File pomFile = getExistingFile(coordinate, "", "pom");
+    ModelBuildingRequest request = new DefaultModelBuildingRequest()
+            .setModelSource(new FileModelSource(pomFile))
+            .setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL)
+            .setProcessPlugins(false)
+            .setTwoPhaseBuilding(false)
+            .setSystemProperties(System.getProperties())
+            .setModelResolver(new LocalModelResolver())
+            .setModelCache(modelCache);
+    try {
+      return MODEL_BUILDER.build(request).getEffectiveModel();
+    } catch (ModelBuildingException e) {
+      for (ModelProblem problem : e.getProblems()) {
+        String message = problem.getMessage();
+        if (message.startsWith(MISSING_VERSION_PREFIX) && message.endsWith(MISSING_VERSION_SUFFIX)) {
+          String dependency = message.substring(MISSING_VERSION_PREFIX.length(),
+                  message.length() - MISSING_VERSION_SUFFIX.length());
+          throw missingVersion(coordinate, dependency);
+        }
+      }
+      throw new RuntimeException("Could not read the POM of " + coordinate + ": " + e.getMessage(), e);
+    }
+  }
+
+  private static MissingArtifactException missingVersion(Coordinate coordinate, String dependency) {
+    return new MissingArtifactException(coordinate, "Missing version of " + dependency + " in " + coordinate
+            + ", it is neither declared nor managed");
+  }
+
+  private static Coordinate toCoordinate(Coordinate parent, Dependency dependency) {
+    String version = dependency.getVersion();
+    if (version == null) {
+      throw missingVersion(parent, dependency.getManagementKey());
+    }
+    if (version.startsWith("[") || version.startsWith("(")) {
+      throw new IllegalStateException("Version range " + version + " of " + dependency.getManagementKey()
+              + " in " + parent + " can't be resolved offline");
+    }
+    PackagingType packagingType = PackagingType.of(dependency.getType());
+    String classifier = dependency.getClassifier() != null ? dependency.getClassifier() : packagingType.getClassifier();
+    return Coordinate.of(dependency.getGroupId(), dependency.getArtifactId(), version, packagingType.getId(), classifier);
+  }
+
+  private File getExistingFile(Coordinate coordinate, String classifier, String extension) {
+    File file = getFile(coordinate.getGroupId(), coordinate.getArtifactId(), coordinate.getVersion(), classifier, extension);
+    if (!file.isFile()) {
+      throw new MissingArtifactException(coordinate, file);
+    }
+    return file;
+  }
+
+  private File getFile(String groupId, String artifactId, String version, String classifier, String extension) {
+    File versionDirectory = new File(new File(new File(directory, groupId.replace('.', File.separatorChar)), artifactId), version);
+    String suffix = classifier.isEmpty() ? "" : "-" + classifier;
+    return new File(versionDirectory, artifactId + "-" + version + suffix + "." + extension);
+  }
+
+  /**
+   * Resolves parents and imported POMs from the local repository only.
+   */
+  private class LocalModelResolver implements ModelResolver {
+    @Override
+    public ModelSource2 resolveModel(String groupId, String artifactId, String version) throws UnresolvableModelException {
+      File file = getFile(groupId, artifactId, version, "", "pom");
+      if (!file.isFile()) {
+        throw new UnresolvableModelException("Not in the local repository: " + file, groupId, artifactId, version);
+      }
+      return new FileModelSource(file);
+    }
+
+    @Override
+    public ModelSource2 resolveModel(Parent parent) throws UnresolvableModelException {
+      return resolveModel(parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+    }
+
+    @Override
+    public ModelSource2 resolveModel(Dependency dependency) throws UnresolvableModelException {
+      return resolveModel(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+    }
+
+    @Override
+    public void addRepository(Repository repository) {
+      // Only the local repository is used
+    }
+
+    @Override
+    public void addRepository(Repository repository, boolean replace) {
+    }
+
+    @Override
+    public ModelResolver newCopy() {
+      return this;
+    }
+  }
+
+  private static class ConcurrentModelCache implements ModelCache {
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String groupId, String artifactId, String version, String tag, Object data) {
+      cache.put(key(groupId, artifactId, version, tag), data);
+    }
+
+    @Override
+    public Object get(String groupId, String artifactId, String version, String tag) {
+      return cache.get(key(groupId, artifactId, version, tag));
+    }
+
+    private static String key(String groupId, String artifactId, String version, String tag) {
+      return groupId + ":" + artifactId + ":" + version + ":" + tag;
+    }
+  }
+}
@@ -10,6 +10,7 @@ public class Main {
     //Resolver resolver = Resolver.createFromProject("../sc2stats/pom.xml");
     //Resolver resolver = Resolver.createFromProject("../folsom/folsom/pom.xml");
     //Resolver resolver = Resolver.createFromProject("../folsom/pom.xml");
+    //Resolver resolver = Resolver.createFromBuiltProject("../folsom/pom.xml");
 
     //Resolver resolver = Resolver.createFromCoordinate("com.spotify:missinglink-maven-plugin:0.1.1");
     //Resolver resolver = Resolver.createFromCoordinate("com.spotify:scio-core_2.12:jar:0.8.0-beta2");
@@ -24,6 +25,9 @@ public class Main {
     long t2 = System.currentTimeMillis();
     long diff = t2 - t1;
     System.out.println("Time: " + diff + " ms");
+    if (Metrics.ENABLED) {
+      System.out.println("Metrics: " + Metrics.getDefault().toJson().toString(2));
+    }
 
     // TODO:
     // handle submodules
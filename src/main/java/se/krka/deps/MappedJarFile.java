@@ -0,0 +1,351 @@
+package se.krka.deps;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads class files from a jar by memory mapping it and parsing the zip central directory directly.
+ * Entries are inflated into buffers that are reused per thread instead of going through streams.
+ *
+ * Only plain zip files are supported, anything else (zip64, encryption, unusual compression methods)
+ * fails with a ZipException so the caller can fall back to {@link java.util.jar.JarFile}.
+ *
+ * Class files under META-INF/versions/N/ are kept apart from the base entries, and only the one entry
+ * per class that a given Java release would load is scanned.
+ */
+class MappedJarFile {
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_HEADER_SIZE = 46;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  private static final String VERSIONS_PREFIX = "META-INF/versions/";
+  private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+  // Versions below this are ignored by the JDK, see java.util.jar.JarFile
+  private static final int MIN_VERSION = 9;
+
+  // Version of a base entry, and of an entry under META-INF/versions/ that no release loads
+  private static final int BASE_VERSION = 0;
+  private static final int INVALID_VERSION = -1;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  // sun.misc.Unsafe and its invokeCleaner method, or null if the JVM doesn't provide them
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      unsafe = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+  private final File file;
+  private final ByteBuffer mapping;
+  private final List<Entry> classEntries;
+
+  // Manifest entry, or null if there is none
+  private final Entry manifest;
+
+  private MappedJarFile(File file, ByteBuffer mapping, List<Entry> classEntries, Entry manifest) {
+    this.file = file;
+    this.mapping = mapping;
+    this.classEntries = classEntries;
+    this.manifest = manifest;
+  }
+
+  static MappedJarFile open(File file) throws IOException {
+    ByteBuffer mapping;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new ZipException("Too large to map: " + file);
+      }
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      mapping = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return readCentralDirectory(file, mapping);
+  }
+
+  /**
+   * @return the class entries that the given Java feature release would load: for a multi-release jar the
+   *         entry under META-INF/versions/N/ with the highest N up to the release, else the base entry.
+   *         Versioned entries are ignored unless the manifest has "Multi-Release: true", like the JDK does.
+   */
+  List<Entry> getClassEntries(int release) throws IOException {
+    boolean multiRelease = classEntries.stream().anyMatch(entry -> entry.version != BASE_VERSION) && isMultiRelease();
+    Map<String, Entry> effective = new LinkedHashMap<>();
+    for (Entry entry : classEntries) {
+      if (entry.version == BASE_VERSION || (multiRelease && entry.version > BASE_VERSION && entry.version <= release)) {
+        effective.merge(entry.path, entry, (previous, current) -> current.version > previous.version ? current : previous);
+      }
+    }
+    return effective.size() == classEntries.size() ? classEntries : new ArrayList<>(effective.values());
+  }
+
+  private boolean isMultiRelease() throws IOException {
+    if (manifest == null) {
+      return false;
+    }
+    byte[] bytes = read(manifest, BUFFERS.get());
+    Manifest parsed = new Manifest(new ByteArrayInputStream(bytes, 0, manifest.size));
+    return "true".equalsIgnoreCase(parsed.getMainAttributes().getValue(Attributes.Name.MULTI_RELEASE));
+  }
+
+  /**
+   * Unmaps the file right away rather than once the mapping is garbage collected, so that a jar file that is
+   * rewritten later, like a snapshot, isn't read through a stale mapping. Nothing may be read afterwards.
+   */
+  void close() {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, mapping);
+    } catch (ReflectiveOperationException e) {
+      // Left to the garbage collector
+    }
+  }
+
+  void loadClass(Entry entry, ClassCollector collector) throws IOException {
+    byte[] bytes = read(entry, BUFFERS.get());
+    collector.loadClass(bytes, 0, entry.size);
+  }
+
+  /**
+   * @return a buffer with the uncompressed entry at the start, only valid until the next read on this thread
+   */
+  private byte[] read(Entry entry, Buffers buffers) throws IOException {
+    int position = entry.localHeaderOffset;
+    if (position + LOCAL_HEADER_SIZE > mapping.limit() || mapping.getInt(position) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header for " + entry.name + " in " + file);
+    }
+    int nameLength = mapping.getShort(position + 26) & 0xFFFF;
+    int extraLength = mapping.getShort(position + 28) & 0xFFFF;
+    int dataOffset = position + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    if (dataOffset + entry.compressedSize > mapping.limit()) {
+      throw new ZipException("Truncated entry " + entry.name + " in " + file);
+    }
+
+    byte[] bytes = buffers.getBytes(entry.size);
+    ByteBuffer data = mapping.duplicate();
+    data.position(dataOffset);
+    data.limit(dataOffset + entry.compressedSize);
+    if (entry.method == STORED) {
+      data.get(bytes, 0, entry.size);
+    } else {
+      inflate(buffers.inflater, data, bytes, entry);
+    }
+    return bytes;
+  }
+
+  private void inflate(Inflater inflater, ByteBuffer data, byte[] bytes, Entry entry) throws ZipException {
+    inflater.reset();
+    inflater.setInput(data);
+    int offset = 0;
+    try {
+      while (offset < entry.size) {
+        int inflated = inflater.inflate(bytes, offset, entry.size - offset);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        offset += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException("Invalid compressed data for " + entry.name + " in " + file + ": " + e.getMessage());
+    }
+    if (offset != entry.size) {
+      throw new ZipException("Unexpected size of " + entry.name + " in " + file);
+    }
+  }
+
+  private static MappedJarFile readCentralDirectory(File file, ByteBuffer mapping) throws ZipException {
+    int end = findEndOfCentralDirectory(file, mapping);
+    int entryCount = mapping.getShort(end + 10) & 0xFFFF;
+    long directorySize = mapping.getInt(end + 12) & 0xFFFFFFFFL;
+    long directoryOffset = mapping.getInt(end + 16) & 0xFFFFFFFFL;
+    if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+      throw new ZipException("Zip64 is not supported: " + file);
+    }
+    if (directoryOffset + directorySize > end) {
+      throw new ZipException("Invalid central directory in " + file);
+    }
+
+    List<Entry> entries = new ArrayList<>();
+    Entry manifest = null;
+    int position = (int) directoryOffset;
+    for (int i = 0; i < entryCount; i++) {
+      if (position + CENTRAL_HEADER_SIZE > end || mapping.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory entry in " + file);
+      }
+      int flags = mapping.getShort(position + 8) & 0xFFFF;
+      int method = mapping.getShort(position + 10) & 0xFFFF;
+      long compressedSize = mapping.getInt(position + 20) & 0xFFFFFFFFL;
+      long size = mapping.getInt(position + 24) & 0xFFFFFFFFL;
+      int nameLength = mapping.getShort(position + 28) & 0xFFFF;
+      int extraLength = mapping.getShort(position + 30) & 0xFFFF;
+      int commentLength = mapping.getShort(position + 32) & 0xFFFF;
+      long localHeaderOffset = mapping.getInt(position + 42) & 0xFFFFFFFFL;
+      int nameOffset = position + CENTRAL_HEADER_SIZE;
+
+      boolean isClassFile = isClassFile(mapping, nameOffset, nameLength);
+      if (isClassFile || isManifest(mapping, nameOffset, nameLength)) {
+        if ((flags & 1) != 0) {
+          throw new ZipException("Encrypted entries are not supported: " + file);
+        }
+        if (method != STORED && method != DEFLATED) {
+          throw new ZipException("Unsupported compression method " + method + " in " + file);
+        }
+        if (size >= Integer.MAX_VALUE || compressedSize >= Integer.MAX_VALUE || localHeaderOffset >= end) {
+          throw new ZipException("Zip64 is not supported: " + file);
+        }
+        if (method == STORED && size != compressedSize) {
+          throw new ZipException("Stored entry with different sizes in " + file);
+        }
+        Entry entry = new Entry(readName(mapping, nameOffset, nameLength), method,
+                (int) compressedSize, (int) size, (int) localHeaderOffset);
+        if (isClassFile) {
+          entries.add(entry);
+        } else {
+          manifest = entry;
+        }
+      }
+      position = nameOffset + nameLength + extraLength + commentLength;
+    }
+    return new MappedJarFile(file, mapping, entries, manifest);
+  }
+
+  private static int findEndOfCentralDirectory(File file, ByteBuffer mapping) throws ZipException {
+    int last = mapping.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int position = last; position >= first; position--) {
+      if (mapping.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new ZipException("Could not find the central directory in " + file);
+  }
+
+  private static boolean isClassFile(ByteBuffer mapping, int nameOffset, int nameLength) {
+    if (nameLength < 6) {
+      return false;
+    }
+    int suffix = nameOffset + nameLength - 6;
+    return mapping.get(suffix) == '.'
+            && mapping.get(suffix + 1) == 'c'
+            && mapping.get(suffix + 2) == 'l'
+            && mapping.get(suffix + 3) == 'a'
+            && mapping.get(suffix + 4) == 's'
+            && mapping.get(suffix + 5) == 's';
+  }
+
+  private static boolean isManifest(ByteBuffer mapping, int nameOffset, int nameLength) {
+    if (nameLength != MANIFEST_NAME.length()) {
+      return false;
+    }
+    for (int i = 0; i < nameLength; i++) {
+      // Looked up case insensitively by the JDK
+      if (Character.toUpperCase(mapping.get(nameOffset + i)) != MANIFEST_NAME.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String readName(ByteBuffer mapping, int nameOffset, int nameLength) {
+    byte[] bytes = new byte[nameLength];
+    ByteBuffer name = mapping.duplicate();
+    name.position(nameOffset);
+    name.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static class Entry {
+    private final String name;
+
+    // Name without the META-INF/versions/N/ prefix, and N, BASE_VERSION or INVALID_VERSION
+    private final String path;
+    private final int version;
+
+    private final int method;
+    private final int compressedSize;
+    private final int size;
+    private final int localHeaderOffset;
+
+    private Entry(String name, int method, int compressedSize, int size, int localHeaderOffset) {
+      this.name = name;
+      this.method = method;
+      if (name.startsWith(VERSIONS_PREFIX)) {
+        int slash = name.indexOf('/', VERSIONS_PREFIX.length());
+        this.path = slash < 0 ? name : name.substring(slash + 1);
+        this.version = slash < 0 ? INVALID_VERSION : parseVersion(name.substring(VERSIONS_PREFIX.length(), slash));
+      } else {
+        this.path = name;
+        this.version = BASE_VERSION;
+      }
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    private static int parseVersion(String version) {
+      try {
+        int parsed = Integer.parseInt(version);
+        return parsed >= MIN_VERSION ? parsed : INVALID_VERSION;
+      } catch (NumberFormatException e) {
+        return INVALID_VERSION;
+      }
+    }
+  }
+
+  private static class Buffers {
+    private final Inflater inflater = new Inflater(true);
+    private byte[] bytes = new byte[64 * 1024];
+
+    byte[] getBytes(int size) {
+      if (bytes.length < size) {
+        bytes = new byte[Math.max(size, 2 * bytes.length)];
+      }
+      return bytes;
+    }
+  }
+}
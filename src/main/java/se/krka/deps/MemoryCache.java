@@ -0,0 +1,152 @@
+package se.krka.deps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded LRU of parsed artifact data, shared by all resolvers in the process so that
+ * repeated analyses don't have to read and parse the same cache entries again.
+ *
+ * Entries are weighed by an estimate of the memory they retain. Class names are stored once in
+ * the {@link SymbolTable}, so mostly the symbol references, the mapping entries and the encoded
+ * data of sections that have not been decoded yet count.
+ */
+class MemoryCache {
+  private static final Logger logger = LoggerFactory.getLogger(MemoryCache.class);
+
+  private static final long ENTRY_OVERHEAD = 256;
+  private static final long MAPPING_OVERHEAD = 64;
+  private static final long REFERENCE_SIZE = 4;
+
+  private static final MemoryCache DEFAULT = new MemoryCache(
+          Long.getLong("deps.cache.memory.mb", 64) << 20);
+
+  private final long maxWeight;
+
+  // Least recently used first
+  private final LinkedHashMap<Coordinate, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long weight;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  MemoryCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Holds up to 64 MB of estimated artifact data, which can be changed with
+   * the system property deps.cache.memory.mb.
+   */
+  static MemoryCache getDefault() {
+    return DEFAULT;
+  }
+
+  synchronized IncompleteArtifact get(Coordinate coordinate) {
+    Entry entry = entries.get(coordinate);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.artifact;
+  }
+
+  synchronized void put(IncompleteArtifact artifact) {
+    Coordinate coordinate = artifact.getCoordinate();
+    if (coordinate.isSnapshot()) {
+      return;
+    }
+    long entryWeight = estimateWeight(artifact);
+    if (entryWeight > maxWeight) {
+      return;
+    }
+    Entry previous = entries.put(coordinate, new Entry(artifact, entryWeight));
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+    weight += entryWeight;
+
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (weight > maxWeight) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      weight -= eldest.weight;
+      evictions++;
+      logger.debug("Evicted {} from the memory cache", eldest.artifact.getCoordinate());
+    }
+  }
+
+  synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long getWeight() {
+    return weight;
+  }
+
+  synchronized long getHits() {
+    return hits;
+  }
+
+  synchronized long getMisses() {
+    return misses;
+  }
+
+  synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "MemoryCache{" +
+            "size=" + entries.size() +
+            ", weight=" + weight +
+            ", hits=" + hits +
+            ", misses=" + misses +
+            ", evictions=" + evictions +
+            '}';
+  }
+
+  private static long estimateWeight(IncompleteArtifact artifact) {
+    // Mostly one artifact per mapping. This doesn't look at the mappings themselves,
+    // since that would decode them if they are loaded lazily.
+    long mappings = artifact.getMappings().size();
+    long references = artifact.getDependencies().size()
+            + artifact.getDefinedClasses().size()
+            + mappings
+            + artifact.getUnused().size()
+            + artifact.getUndeclared().size();
+    return ENTRY_OVERHEAD + mappings * MAPPING_OVERHEAD + references * REFERENCE_SIZE + getRetainedBytes(artifact);
+  }
+
+  private static long getRetainedBytes(IncompleteArtifact artifact) {
+    long bytes = 0;
+    if (artifact.getDefinedClasses() instanceof LazySymbolSet) {
+      bytes += ((LazySymbolSet) artifact.getDefinedClasses()).getRetainedBytes();
+    }
+    if (artifact.getMappings() instanceof LazyMappings) {
+      bytes += ((LazyMappings) artifact.getMappings()).getRetainedBytes();
+    }
+    return bytes;
+  }
+
+  private static class Entry {
+    private final IncompleteArtifact artifact;
+    private final long weight;
+
+    private Entry(IncompleteArtifact artifact, long weight) {
+      this.artifact = artifact;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package se.krka.deps;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the phases of an analysis, enabled with the system property deps.metrics=true.
+ * They are registered as the MBean se.krka.deps:type=Metrics, and {@link #toJson()} summarizes them.
+ *
+ * Timers and counters only record anything when enabled. Since {@link #ENABLED} is a constant,
+ * the JIT removes the checks, so a disabled timer doesn't even read the clock.
+ */
+class Metrics {
+  private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+  static final boolean ENABLED = Boolean.getBoolean("deps.metrics");
+
+  // Number of artifacts to include in the summary, slowest to scan first
+  private static final int SUMMARY_ARTIFACTS = 20;
+
+  private static final Metrics DEFAULT = createDefault();
+
+  private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+  private final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+
+  // Map of artifact -> time and size of the scan, for the artifacts that were scanned
+  private final Map<Coordinate, Scan> scans = new ConcurrentHashMap<>();
+
+  static Metrics getDefault() {
+    return DEFAULT;
+  }
+
+  private static Metrics createDefault() {
+    Metrics metrics = new Metrics();
+    if (ENABLED) {
+      try {
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(metrics.new MBean(), new ObjectName("se.krka.deps:type=Metrics"));
+      } catch (JMException e) {
+        logger.warn("Could not register the metrics MBean: {}", e.getMessage());
+      }
+    }
+    return metrics;
+  }
+
+  Counter counter(String name) {
+    return counters.computeIfAbsent(name, key -> new Counter());
+  }
+
+  Timer timer(String name) {
+    return timers.computeIfAbsent(name, key -> new Timer());
+  }
+
+  void recordScan(Coordinate coordinate, long nanos, int classes, long bytes) {
+    if (ENABLED) {
+      scans.put(coordinate, new Scan(nanos, classes, bytes));
+    }
+  }
+
+  /**
+   * @return the counters, the count, total and max time of the timers in milliseconds,
+   *         and the artifacts that took the longest to scan
+   */
+  JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    JSONObject counterValues = new JSONObject();
+    counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+    json.put("counters", counterValues);
+
+    JSONObject timerValues = new JSONObject();
+    timers.forEach((name, timer) -> timerValues.put(name, new JSONObject()
+            .put("count", timer.getCount())
+            .put("totalMs", toMillis(timer.getTotalNanos()))
+            .put("maxMs", toMillis(timer.getMaxNanos()))));
+    json.put("timers", timerValues);
+
+    JSONArray slowest = new JSONArray();
+    scans.entrySet().stream()
+            .sorted(Comparator.comparingLong((Map.Entry<Coordinate, Scan> entry) -> entry.getValue().nanos).reversed())
+            .limit(SUMMARY_ARTIFACTS)
+            .forEach(entry -> slowest.put(new JSONObject()
+                    .put("coordinate", entry.getKey().toString())
+                    .put("scanMs", toMillis(entry.getValue().nanos))
+                    .put("classes", entry.getValue().classes)
+                    .put("bytes", entry.getValue().bytes)));
+    json.put("slowestScans", slowest);
+    return json;
+  }
+
+  /**
+   * @return all counters, and the count, total and max time of all timers, by attribute name
+   */
+  private Map<String, Object> getAttributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    counters.forEach((name, counter) -> attributes.put(name, counter.get()));
+    timers.forEach((name, timer) -> {
+      attributes.put(name + ".count", timer.getCount());
+      attributes.put(name + ".totalMs", toMillis(timer.getTotalNanos()));
+      attributes.put(name + ".maxMs", toMillis(timer.getMaxNanos()));
+    });
+    return attributes;
+  }
+
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+
+  static class Counter {
+    private final LongAdder value = new LongAdder();
+
+    void increment() {
+      if (ENABLED) {
+        value.increment();
+      }
+    }
+
+    void add(long amount) {
+      if (ENABLED) {
+        value.add(amount);
+      }
+    }
+
+    long get() {
+      return value.sum();
+    }
+  }
+
+  static class Timer {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @return the start time to pass to {@link #stop(long)}
+     */
+    long start() {
+      return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return the time since start in nanoseconds
+     */
+    long stop(long start) {
+      if (!ENABLED) {
+        return 0;
+      }
+      long nanos = System.nanoTime() - start;
+      record(nanos);
+      return nanos;
+    }
+
+    void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    long getCount() {
+      return count.sum();
+    }
+
+    long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    long getMaxNanos() {
+      return maxNanos.get();
+    }
+  }
+
+  private static class Scan {
+    private final long nanos;
+    private final int classes;
+    private final long bytes;
+
+    private Scan(long nanos, int classes, long bytes) {
+      this.nanos = nanos;
+      this.classes = classes;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * Exposes each counter and timer as a read only attribute.
+   */
+  class MBean implements DynamicMBean {
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+      Object value = Metrics.this.getAttributes().get(attribute);
+      if (value == null) {
+        throw new AttributeNotFoundException(attribute);
+      }
+      return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("Read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+      Map<String, Object> attributes = Metrics.this.getAttributes();
+      AttributeList list = new AttributeList();
+      for (String name : names) {
+        if (attributes.containsKey(name)) {
+          list.add(new Attribute(name, attributes.get(name)));
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+      throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+      MBeanAttributeInfo[] attributes = Metrics.this.getAttributes().entrySet().stream()
+              .map(entry -> new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                      entry.getKey(), true, false, false))
+              .toArray(MBeanAttributeInfo[]::new);
+      return new MBeanInfo(Metrics.class.getName(), "Counters and timers of dependency analysis",
+              attributes, null, new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package se.krka.deps;
+
+import java.io.File;
+
+public class MissingArtifactException extends RuntimeException {
+  private final Coordinate coordinate;
+  private final File file;
+
+  MissingArtifactException(Coordinate coordinate, File file) {
+    super("Missing artifact " + coordinate + ", expected " + file + " in the local repository");
+    this.coordinate = coordinate;
+    this.file = file;
+  }
+
+  MissingArtifactException(Coordinate coordinate, String message) {
+    super(message);
+    this.coordinate = coordinate;
+    this.file = null;
+  }
+
+  public Coordinate getCoordinate() {
+    return coordinate;
+  }
+
+  /**
+   * @return the file that was expected, or null if the POM of the artifact doesn't say which one to look for
+   */
+  public File getFile() {
+    return file;
+  }
+}
@@ -4,11 +4,11 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Opcodes;
 
 class MyAnnotationVisitor extends AnnotationVisitor {
-  private final ArtifactContainerBuilder artifactContainer;
+  private final ClassCollector collector;
 
-  MyAnnotationVisitor(ArtifactContainerBuilder artifactContainer) {
+  MyAnnotationVisitor(ClassCollector collector) {
     super(Opcodes.ASM7);
-    this.artifactContainer = artifactContainer;
+    this.collector = collector;
   }
 
   @Override
@@ -18,13 +18,13 @@ class MyAnnotationVisitor extends AnnotationVisitor {
 
   @Override
   public void visitEnum(String name, String descriptor, String value) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     super.visitEnum(name, descriptor, value);
   }
 
   @Override
   public AnnotationVisitor visitAnnotation(String name, String descriptor) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return this;
   }
 
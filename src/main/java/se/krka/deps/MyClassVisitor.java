@@ -10,18 +10,18 @@ import org.objectweb.asm.TypePath;
 import static org.objectweb.asm.Opcodes.ASM7;
 
 class MyClassVisitor extends ClassVisitor {
-  private final ArtifactContainerBuilder artifactContainer;
+  private final ClassCollector collector;
   private final MyMethodVisitor methodVisitor;
   private final MyAnnotationVisitor annotationVisitor;
   private final MyFieldVisitor fieldVisitor;
   private String className;
 
-  MyClassVisitor(ArtifactContainerBuilder artifactContainer) {
+  MyClassVisitor(ClassCollector collector) {
     super(ASM7);
-    this.artifactContainer = artifactContainer;
-    annotationVisitor = new MyAnnotationVisitor(artifactContainer);
-    methodVisitor = new MyMethodVisitor(artifactContainer, annotationVisitor);
-    fieldVisitor = new MyFieldVisitor(artifactContainer, annotationVisitor);
+    this.collector = collector;
+    annotationVisitor = new MyAnnotationVisitor(collector);
+    methodVisitor = new MyMethodVisitor(collector, annotationVisitor);
+    fieldVisitor = new MyFieldVisitor(collector, annotationVisitor);
   }
 
   @Override
@@ -32,14 +32,14 @@ class MyClassVisitor extends ClassVisitor {
       return;
     }
     if (isAccessible(access)) {
-      artifactContainer.addDefinition(className);
+      collector.addDefinition(className);
     }
 
     if (superName != null) {
-      artifactContainer.addClass(superName);
+      collector.addClass(superName);
     }
     for (String anInterface : interfaces) {
-      artifactContainer.addClass(anInterface);
+      collector.addClass(anInterface);
     }
   }
 
@@ -51,32 +51,32 @@ class MyClassVisitor extends ClassVisitor {
   public void visitInnerClass(String name, String outerName, String innerName, int access) {
     if (outerName == null || outerName.equals(className)) {
       if (isAccessible(access)) {
-        artifactContainer.addDefinition(name);
+        collector.addDefinition(name);
       }
     }
   }
 
   @Override
   public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return fieldVisitor;
   }
 
   @Override
   public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return methodVisitor;
   }
 
   @Override
   public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
   @Override
   public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
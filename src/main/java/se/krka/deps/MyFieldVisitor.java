@@ -7,24 +7,24 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.TypePath;
 
 class MyFieldVisitor extends FieldVisitor {
-  private final ArtifactContainerBuilder artifactContainer;
+  private final ClassCollector collector;
   private final MyAnnotationVisitor annotationVisitor;
 
-  MyFieldVisitor(ArtifactContainerBuilder artifactContainer, MyAnnotationVisitor annotationVisitor) {
+  MyFieldVisitor(ClassCollector collector, MyAnnotationVisitor annotationVisitor) {
     super(Opcodes.ASM7);
-    this.artifactContainer = artifactContainer;
+    this.collector = collector;
     this.annotationVisitor = annotationVisitor;
   }
 
   @Override
   public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
   @Override
   public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
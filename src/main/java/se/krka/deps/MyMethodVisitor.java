@@ -10,12 +10,12 @@ import org.objectweb.asm.TypePath;
 import static org.objectweb.asm.Opcodes.ASM7;
 
 class MyMethodVisitor extends MethodVisitor {
-  private final ArtifactContainerBuilder artifactContainer;
+  private final ClassCollector collector;
   private final AnnotationVisitor annotationVisitor;
 
-  MyMethodVisitor(ArtifactContainerBuilder artifactContainer, MyAnnotationVisitor annotationVisitor) {
+  MyMethodVisitor(ClassCollector collector, MyAnnotationVisitor annotationVisitor) {
     super(ASM7);
-    this.artifactContainer = artifactContainer;
+    this.collector = collector;
     this.annotationVisitor = annotationVisitor;
   }
 
@@ -31,13 +31,13 @@ class MyMethodVisitor extends MethodVisitor {
 
   @Override
   public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
   @Override
   public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
@@ -48,7 +48,7 @@ class MyMethodVisitor extends MethodVisitor {
 
   @Override
   public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
@@ -79,29 +79,29 @@ class MyMethodVisitor extends MethodVisitor {
 
   @Override
   public void visitTypeInsn(int opcode, String type) {
-    artifactContainer.addOwner(type);
+    collector.addOwner(type);
     super.visitTypeInsn(opcode, type);
   }
 
   @Override
   public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
-    artifactContainer.addOwner(owner);
-    artifactContainer.addDescriptor(descriptor);
+    collector.addOwner(owner);
+    collector.addDescriptor(descriptor);
     super.visitFieldInsn(opcode, owner, name, descriptor);
   }
 
   @Override
   public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-    artifactContainer.addOwner(owner);
-    artifactContainer.addDescriptor(descriptor);
+    collector.addOwner(owner);
+    collector.addDescriptor(descriptor);
     super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
   }
 
   @Override
   public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
-    artifactContainer.addDescriptor(descriptor);
-    artifactContainer.addClass(bootstrapMethodHandle.getOwner());
-    artifactContainer.addDescriptor(bootstrapMethodHandle.getDesc());
+    collector.addDescriptor(descriptor);
+    collector.addClass(bootstrapMethodHandle.getOwner());
+    collector.addDescriptor(bootstrapMethodHandle.getDesc());
     
     // TODO: look into bootstrapMethodArguments too
     super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
@@ -139,39 +139,39 @@ class MyMethodVisitor extends MethodVisitor {
 
   @Override
   public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     super.visitMultiANewArrayInsn(descriptor, numDimensions);
   }
 
   @Override
   public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
   @Override
   public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
     if (type != null) {
-      artifactContainer.addClass(type);
+      collector.addClass(type);
     }
     super.visitTryCatchBlock(start, end, handler, type);
   }
 
   @Override
   public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
   @Override
   public void visitLocalVariable(String name, String descriptor, String signature, Label start, Label end, int index) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     super.visitLocalVariable(name, descriptor, signature, start, end, index);
   }
 
   @Override
   public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start, Label[] end, int[] index, String descriptor, boolean visible) {
-    artifactContainer.addDescriptor(descriptor);
+    collector.addDescriptor(descriptor);
     return annotationVisitor;
   }
 
@@ -1,80 +1,123 @@
 package se.krka.deps;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
-class Node<T> {
-  private final Map<String, Node<T>> nodes = new HashMap<>();
-  private final Map<String, Set<T>> classes = new HashMap<>();
-  private Set<Set<T>> dependencies;
+/**
+ * Package trie that summarizes which classes are found where as prefix mappings:
+ * "package.**" when all classes in a package and its subpackages are found in the same artifacts,
+ * and "package.*" when all classes directly in a package are.
+ *
+ * Each distinct set of artifacts is given an id up front, so that the trie only has to compare ints,
+ * and packages are looked up in the class name without creating substrings, see {@link SegmentTable}.
+ * The id that all classes below a node share is kept up to date while adding classes, so the
+ * mappings are written in a single pass over the trie.
+ */
+class Node {
+  // No classes added yet
+  private static final int NONE = -1;
+
+  // Classes with different sets of artifacts
+  private static final int MIXED = -2;
+
+  private static final String[] NO_NAMES = new String[0];
+  private static final int[] NO_IDS = new int[0];
+
+  // Subpackage name -> node
+  private final SegmentTable<Node> packages = new SegmentTable<>();
+
+  // Classes directly in this package, as the full class name and where the simple name starts,
+  // with the id of the set of artifacts each is found in
+  private String[] classNames = NO_NAMES;
+  private int[] classStarts = NO_IDS;
+  private int[] classIds = NO_IDS;
+  private int classCount;
+
+  // Id shared by all classes in this package and its subpackages, or NONE or MIXED
+  private int subtreeId = NONE;
+
+  // Id shared by all classes directly in this package, or NONE or MIXED
+  private int packageId = NONE;
 
   private Node() {
   }
 
   static <T> Map<String, Set<T>> getDependencyMap(Map<String, Set<T>> dependencies) {
-    Node<T> root = new Node<>();
-    dependencies.forEach(root::add);
-    root.simplify();
-    return root.toMap();
+    Map<Set<T>, Integer> ids = new HashMap<>();
+    List<Set<T>> foundIn = new ArrayList<>();
+    Node root = new Node();
+    dependencies.forEach((className, artifacts) -> {
+      Integer id = ids.putIfAbsent(artifacts, foundIn.size());
+      if (id == null) {
+        id = foundIn.size();
+        foundIn.add(artifacts);
+      }
+      root.add(className, id);
+    });
+
+    Map<String, Set<T>> map = new HashMap<>();
+    root.addMappings("", foundIn, map);
+    return map;
   }
 
-  private void add(String className, Set<T> foundIn) {
-    Node<T> node = this;
-    String[] parts = className.split("\\.");
-    String lastPart = parts[parts.length - 1];
-    for (int i = 0; i < parts.length - 1; i++) {
-      node = node.add(parts[i]);
+  private void add(String className, int id) {
+    // Same segments as String.split("\\."), which drops trailing empty ones
+    int end = className.length();
+    while (end > 0 && className.charAt(end - 1) == '.') {
+      end--;
     }
-    node.classes.put(lastPart, foundIn);
-  }
 
-  Map<String, Set<T>> toMap() {
-    return toMap("", new HashMap<>());
+    Node node = this;
+    int start = 0;
+    int period;
+    while ((period = className.indexOf('.', start)) >= 0 && period < end) {
+      node.subtreeId = merge(node.subtreeId, id);
+      node = node.packages.computeIfAbsent(className, start, period, Node::new);
+      start = period + 1;
+    }
+    node.subtreeId = merge(node.subtreeId, id);
+    node.packageId = merge(node.packageId, id);
+    node.addClass(className, start, end, id);
   }
 
-  private Map<String, Set<T>> toMap(String path, Map<String, Set<T>> map) {
-    String prepend = path.isEmpty() ? "" : path + ".";
-    nodes.forEach((s, node) -> node.toMap(prepend + s, map));
-    if (!classes.isEmpty()) {
-      classes.forEach((className, foundIn) -> map.put(prepend + className, foundIn));
+  private void addClass(String className, int start, int end, int id) {
+    if (classCount == classNames.length) {
+      int capacity = Math.max(4, 2 * classCount);
+      classNames = Arrays.copyOf(classNames, capacity);
+      classStarts = Arrays.copyOf(classStarts, capacity);
+      classIds = Arrays.copyOf(classIds, capacity);
     }
-    return map;
+    // Only a trailing period makes the simple name end before the class name does
+    classNames[classCount] = end == className.length() ? className : className.substring(0, end);
+    classStarts[classCount] = start;
+    classIds[classCount] = id;
+    classCount++;
   }
 
-
-  private Set<Set<T>> getDependencies() {
-    if (dependencies == null) {
-      dependencies = nodes.values().stream()
-              .flatMap(node -> node.getDependencies().stream())
-              .collect(Collectors.toSet());
-      dependencies.addAll(classes.values());
+  private static int merge(int current, int id) {
+    if (current == NONE || current == id) {
+      return id;
     }
-    return dependencies;
+    return MIXED;
   }
 
-  private void simplify() {
-    nodes.values().forEach(Node::simplify);
-
-    Set<Set<T>> dependencies = getDependencies();
-    if (dependencies.size() == 1) {
-      classes.clear();
-      classes.put("**", dependencies.iterator().next());
-      nodes.clear();
+  private <T> void addMappings(String path, List<Set<T>> foundIn, Map<String, Set<T>> map) {
+    String prefix = path.isEmpty() ? "" : path + ".";
+    if (subtreeId >= 0) {
+      map.put(prefix + "**", foundIn.get(subtreeId));
+      return;
+    }
+    packages.forEach((name, node) -> node.addMappings(prefix + name, foundIn, map));
+    if (packageId >= 0) {
+      map.put(prefix + "*", foundIn.get(packageId));
     } else {
-      Set<Set<T>> classDependencies = new HashSet<>(classes.values());
-      if (classDependencies.size() == 1) {
-        classes.clear();
-        classes.put("*", classDependencies.iterator().next());
+      for (int i = 0; i < classCount; i++) {
+        map.put(prefix + classNames[i].substring(classStarts[i]), foundIn.get(classIds[i]));
       }
-
     }
   }
-
-  private Node<T> add(String part) {
-    return nodes.computeIfAbsent(part, p -> new Node<>());
-  }
 }
-
@@ -0,0 +1,33 @@
+package se.krka.deps;
+
+import org.apache.maven.model.Model;
+
+import java.io.File;
+
+class ProjectModule {
+  private final Model model;
+
+  // The pom file of the module, or null if unknown
+  private final File pomFile;
+
+  // Class directory or jar file, or null if the module has not been built
+  private final File output;
+
+  ProjectModule(Model model, File pomFile, File output) {
+    this.model = model;
+    this.pomFile = pomFile;
+    this.output = output;
+  }
+
+  Model getModel() {
+    return model;
+  }
+
+  File getPomFile() {
+    return pomFile;
+  }
+
+  File getOutput() {
+    return output;
+  }
+}
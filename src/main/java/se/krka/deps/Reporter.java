@@ -0,0 +1,67 @@
+package se.krka.deps;
+
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Receives the results of an analysis as they are walked, see {@link Resolver#reportDependencyTree(Reporter)}.
+ * All methods do nothing by default, so a program can implement only the ones it needs.
+ */
+public interface Reporter {
+  default void startDependencyTree() {
+  }
+
+  /**
+   * The first time an artifact is found in the tree, at the given depth. The roots have depth 0,
+   * and the lines are numbered from 1 in the order the artifacts are found.
+   */
+  default void dependency(int depth, int line, ArtifactContainer artifact) {
+  }
+
+  /**
+   * An artifact that was already found on an earlier line, whose dependencies are not repeated.
+   */
+  default void repeatedDependency(int depth, int line, ArtifactContainer artifact) {
+  }
+
+  /**
+   * Classes with the prefix that the artifact uses, and the names of the artifacts that provide them,
+   * which is empty if they are expected in runtime. See {@link ArtifactContainer#getMappings()}.
+   */
+  default void mapping(ArtifactContainer artifact, String prefix, Set<String> providers) {
+  }
+
+  default void startUnusedWarnings() {
+  }
+
+  default void unusedDependencies(ArtifactContainer artifact, Set<ArtifactContainer> unused) {
+  }
+
+  default void startUndeclaredWarnings() {
+  }
+
+  default void undeclaredDependencies(ArtifactContainer artifact, Set<ArtifactContainer> undeclared) {
+  }
+
+  /**
+   * Writes out anything that has been buffered, called at the end of each report.
+   */
+  default void flush() {
+  }
+
+  /**
+   * @param format text, jsonl or compact
+   */
+  static Reporter forFormat(String format, OutputStream output) {
+    switch (format) {
+      case "text":
+        return new TextReporter(output);
+      case "jsonl":
+        return new JsonLinesReporter(output);
+      case "compact":
+        return new CompactTreeReporter(output);
+      default:
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+  }
+}
@@ -1,46 +1,111 @@
 package se.krka.deps;
 
+import org.apache.maven.model.Model;
 import org.jboss.shrinkwrap.resolver.api.maven.Maven;
-import org.jboss.shrinkwrap.resolver.api.maven.MavenArtifactInfo;
 import org.jboss.shrinkwrap.resolver.api.maven.MavenResolvedArtifact;
+import org.jboss.shrinkwrap.resolver.api.maven.MavenResolverSystem;
+import org.jboss.shrinkwrap.resolver.api.maven.PomEquippedResolveStage;
 import org.jboss.shrinkwrap.resolver.api.maven.ScopeType;
 import org.jboss.shrinkwrap.resolver.api.maven.embedded.BuiltProject;
 import org.jboss.shrinkwrap.resolver.api.maven.embedded.EmbeddedMaven;
+import org.jboss.shrinkwrap.resolver.api.maven.pom.ParsedPomFile;
+import org.jboss.shrinkwrap.resolver.impl.maven.MavenWorkingSessionContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class Resolver {
   private static final Logger logger = LoggerFactory.getLogger(Resolver.class);
 
+  // Most of the work is waiting for downloads or reading jar files
+  private static final int THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  private static final Metrics.Timer RESOLVE_ALL_TIMER = Metrics.getDefault().timer("resolver.resolveAll");
+  private static final Metrics.Timer MAVEN_TIMER = Metrics.getDefault().timer("resolver.maven");
+  private static final Metrics.Timer LOCAL_REPOSITORY_TIMER = Metrics.getDefault().timer("resolver.localRepository");
+  private static final Metrics.Timer ANALYZE_TIMER = Metrics.getDefault().timer("resolver.analyze");
+  private static final Metrics.Timer DIGEST_TIMER = Metrics.getDefault().timer("resolver.contentDigest");
+
+  // Only use what is already in the local repository, see LocalRepository
+  private static final boolean OFFLINE = Boolean.getBoolean("deps.offline");
+
+  // Setting up a resolver reads the settings and creates a repository session, so each thread
+  // reuses one instead of creating one per artifact. They can't be shared, since a resolver
+  // collects the coordinates to resolve until the resolution is done.
+  private static final ThreadLocal<MavenResolverSystem> MAVEN_RESOLVER = ThreadLocal.withInitial(Maven::resolver);
+
   // Map of artifact name -> artifact
-  private final Map<Coordinate, ArtifactContainer> artifacts = new HashMap<>();
+  private final Map<Coordinate, ArtifactContainer> artifacts = new ConcurrentHashMap<>();
+
+  // Map of artifact name -> artifact that may still be in progress
+  private final Map<Coordinate, CompletableFuture<ArtifactContainer>> futures = new ConcurrentHashMap<>();
+
+  // Map of artifact name -> declared dependencies and a way to build the artifact
+  private final Map<Coordinate, CompletableFuture<ArtifactSource>> sources = new ConcurrentHashMap<>();
+
+  // Map of artifact name -> digest of the content of a snapshot and its dependencies
+  private final Map<Coordinate, byte[]> contentDigests = new ConcurrentHashMap<>();
+
+  // Map of artifact name -> artifact that was resolved while looking up module dependencies
+  private final Map<Coordinate, MavenResolvedArtifact> resolvedArtifacts = new ConcurrentHashMap<>();
 
   private final List<ArtifactContainer> roots = new ArrayList<>();
 
+  // Map of artifact name -> project module, for resolvers created from a project
+  private final Map<Coordinate, ProjectModule> modules = new LinkedHashMap<>();
+
   private final ArtifactCache artifactCache = ArtifactCache.getDefault();
 
+  // Reads artifacts directly instead of resolving them, only set when offline
+  private final LocalRepository localRepository = OFFLINE ? LocalRepository.getDefault() : null;
+
+  // Class name -> artifacts that define it, filled in as soon as each artifact is ready
+  private final ClassIndex classIndex = new ClassIndex(SymbolTable.getDefault());
+
+  // Ids of the artifacts in the graph, for storing their transitive dependencies as bitsets
+  private final ArtifactIndex artifactIndex = new ArtifactIndex();
+
+  private final ExecutorService executor = createExecutor();
+
   public static Resolver createFromPomfile(String filename) {
     System.out.println("Resolving artifacts from pomfile: " + filename);
-    List<MavenResolvedArtifact> artifacts = Maven.resolver().loadPomFromFile(filename)
+    List<MavenResolvedArtifact> artifacts = Maven.configureResolver().workOffline(OFFLINE).loadPomFromFile(filename)
             .importDependencies(ScopeType.COMPILE, ScopeType.PROVIDED)
             .resolve().withTransitivity().asList(MavenResolvedArtifact.class);
 
     Resolver resolver = new Resolver();
-    for (MavenResolvedArtifact artifact : artifacts) {
-      resolver.roots.add(resolver.resolve(Coordinate.fromMaven(artifact.getCoordinate())));
-    }
+    List<Coordinate> coordinates = artifacts.stream()
+            .map(artifact -> Coordinate.fromMaven(artifact.getCoordinate()))
+            .collect(Collectors.toList());
+    resolver.roots.addAll(resolver.resolveAll(coordinates));
     return resolver;
   }
 
@@ -49,11 +114,75 @@ public class Resolver {
             .setGoals("clean", "package")
             .build();
 
+    Map<Coordinate, ProjectModule> modules = new LinkedHashMap<>();
+    addModules(modules, builtProject);
+    return createFromModules(modules);
+  }
+
+  /**
+   * Like {@link #createFromProject(String)}, but uses the existing output of each module instead of
+   * building the project: target/classes, or else the jar installed in the local repository.
+   * Only the modules without any output are built, along with the modules they depend on.
+   */
+  public static Resolver createFromBuiltProject(String filename) {
+    Resolver resolver = forBuiltProject(filename);
+    resolver.resolveModules();
+    return resolver;
+  }
+
+  /**
+   * Like {@link #createFromBuiltProject(String)}, but only finds the modules and their output.
+   * Nothing is scanned until {@link #resolveModules()}.
+   */
+  static Resolver forBuiltProject(String filename) {
+    Map<Coordinate, ProjectModule> modules = new LinkedHashMap<>();
+    addModules(modules, new File(filename));
+
+    List<String> missing = modules.entrySet().stream()
+            .filter(entry -> entry.getValue().getOutput() == null)
+            .map(entry -> entry.getKey().getGroupId() + ":" + entry.getKey().getArtifactId())
+            .collect(Collectors.toList());
+    if (!missing.isEmpty()) {
+      logger.info("Building modules without output: {}", missing);
+      BuiltProject builtProject = EmbeddedMaven.forProject(filename)
+              .setGoals("package")
+              .setProjects(missing)
+              .setAlsoMake(true)
+              .skipTests(true)
+              .build();
+      Map<Coordinate, ProjectModule> built = new LinkedHashMap<>();
+      addModules(built, builtProject);
+      built.forEach((coordinate, module) -> modules.computeIfPresent(coordinate,
+              (key, existing) -> existing.getOutput() == null ? module : existing));
+    }
     Resolver resolver = new Resolver();
-    addModules(resolver, builtProject);
+    resolver.registerModules(modules);
     return resolver;
   }
 
+  static Resolver createFromModules(Map<Coordinate, ProjectModule> modules) {
+    Resolver resolver = new Resolver();
+    resolver.registerModules(modules);
+    resolver.resolveModules();
+    return resolver;
+  }
+
+  /**
+   * Makes the modules resolvable from their project files instead of from a repository.
+   */
+  void registerModules(Map<Coordinate, ProjectModule> modules) {
+    this.modules.putAll(modules);
+    modules.forEach((coordinate, module) -> sources.put(coordinate,
+            CompletableFuture.supplyAsync(() -> getModuleSource(coordinate, module, modules), executor)));
+  }
+
+  /**
+   * Resolves the registered modules as the roots.
+   */
+  void resolveModules() {
+    roots.addAll(resolveAll(new ArrayList<>(modules.keySet())));
+  }
+
   public static Resolver createFromCoordinate(String coordinate) {
     return createFromCoordinate(Coordinate.fromString(coordinate));
   }
@@ -64,93 +193,376 @@ public class Resolver {
     return resolver;
   }
 
-  private static void addModules(Resolver resolver, BuiltProject module) {
-    module.getModules().forEach(submodule -> addModules(resolver, submodule));
-    addRoot(resolver, module);
+  private static void addModules(Map<Coordinate, ProjectModule> modules, BuiltProject module) {
+    module.getModules().forEach(submodule -> addModules(modules, submodule));
+    modules.putIfAbsent(Coordinate.fromModel(module.getModel()),
+            new ProjectModule(module.getModel(), module.getModel().getPomFile(), new File(module.getTargetDirectory(), "classes")));
+  }
+
+  private static void addModules(Map<Coordinate, ProjectModule> modules, File pomFile) {
+    PomEquippedResolveStage stage = Maven.configureResolver().workOffline(OFFLINE).loadPomFromFile(pomFile);
+    ParsedPomFile parsedPomFile = ((MavenWorkingSessionContainer) stage).getMavenWorkingSession().getParsedPomFile();
+    Model model = parsedPomFile.getModel();
+    for (String submodule : model.getModules()) {
+      File submoduleFile = new File(parsedPomFile.getBaseDirectory(), submodule);
+      addModules(modules, submoduleFile.isDirectory() ? new File(submoduleFile, "pom.xml") : submoduleFile);
+    }
+    Coordinate coordinate = Coordinate.fromModel(model);
+    modules.putIfAbsent(coordinate, new ProjectModule(model, pomFile, findOutput(coordinate, model, parsedPomFile)));
+  }
+
+  /**
+   * @return the build output of a module, or null if it has not been built
+   */
+  private static File findOutput(Coordinate coordinate, Model model, ParsedPomFile parsedPomFile) {
+    File classes = parsedPomFile.getBuildOutputDirectory();
+    if (classes.isDirectory()) {
+      return classes;
+    }
+    if ("pom".equals(model.getPackaging())) {
+      // Nothing to build
+      return classes;
+    }
+    try {
+      File installed = Maven.configureResolver()
+              .workOffline()
+              .resolve(coordinate.toString())
+              .withoutTransitivity()
+              .asSingleFile();
+      logger.info("Using installed artifact for {}: {}", coordinate, installed);
+      return installed;
+    } catch (RuntimeException e) {
+      logger.debug("No installed artifact for {}: {}", coordinate, e.getMessage());
+      return null;
+    }
   }
 
-  private static void addRoot(Resolver resolver, BuiltProject builtProject) {
-    List<MavenResolvedArtifact> dependencies = builtProject.getModel()
+  private ArtifactSource getModuleSource(Coordinate coordinate, ProjectModule module, Map<Coordinate, ProjectModule> modules) {
+    Set<Coordinate> dependencies = module.getModel()
             .getDependencies().stream()
             .filter(dependency -> Set.of("compile", "provided").contains(dependency.getScope()))
             .map(Coordinate::fromMaven)
-            .map(Resolver::resolveMavenArtifact)
-            .collect(Collectors.toList());
-
-    Coordinate coordinate = Coordinate.fromModel(builtProject.getModel());
-
-    File file = new File(builtProject.getTargetDirectory(), "classes");
+            .map(dependency -> modules.containsKey(dependency) ? dependency : resolveDependency(dependency))
+            .collect(Collectors.toSet());
 
-    ArtifactContainer result;
-    if (resolver.artifacts.containsKey(coordinate)) {
-      ArtifactContainer container = resolver.artifacts.get(coordinate);
-      if (container != null) {
-        result = container;
-      } else {
-        throw new CyclicalDependencyException(coordinate);
+    File file = module.getOutput();
+    return new ArtifactSource(coordinate, dependencies, artifactDependencies -> {
+      ClassManifest manifest = file.isDirectory() ? ClassManifest.forDirectory(file) : null;
+      if (coordinate.isSnapshot()) {
+        return analyze(coordinate, file, manifest, artifactDependencies);
       }
-    } else {
-      resolver.artifacts.put(coordinate, null);
-      Set<ArtifactContainer> artifactDependencies = resolveDependencies(resolver, dependencies, coordinate);
-      result = new ArtifactContainerBuilder(coordinate, artifactDependencies)
+      // A module with a release version would share the cache entry of the released artifact
+      return new ArtifactContainerBuilder(coordinate, artifactDependencies)
+              .classIndex(classIndex)
+              .artifactIndex(artifactIndex)
+              .classManifest(manifest)
               .build(file);
+    });
+  }
 
-      resolver.artifacts.put(coordinate, result);
+  private Coordinate resolveDependency(Coordinate dependency) {
+    if (localRepository != null) {
+      // Fail early if it's missing
+      localRepository.getFile(dependency);
+      return dependency;
     }
-    resolver.roots.add(result);
+    MavenResolvedArtifact resolvedArtifact = resolveMavenArtifact(dependency);
+    Coordinate coordinate = Coordinate.fromMaven(resolvedArtifact.getCoordinate());
+    resolvedArtifacts.putIfAbsent(coordinate, resolvedArtifact);
+    return coordinate;
+  }
+
+  public ArtifactContainer resolve(Coordinate coordinate) {
+    return resolveAll(List.of(coordinate)).get(0);
   }
 
-  private static Set<ArtifactContainer> resolveDependencies(Resolver resolver, List<MavenResolvedArtifact> dependencies, Coordinate coordinate) {
+  /**
+   * Resolves all coordinates and their transitive dependencies concurrently.
+   * Each artifact is built as soon as all of its dependencies have been built.
+   */
+  public List<ArtifactContainer> resolveAll(List<Coordinate> coordinates) {
+    long start = RESOLVE_ALL_TIMER.start();
     try {
-      Set<ArtifactContainer> artifactDependencies = new HashSet<>();
-      for (MavenArtifactInfo dependency : dependencies) {
-        artifactDependencies.add(resolver.resolve(Coordinate.fromMaven(dependency.getCoordinate())));
+      Resolution resolution = new Resolution();
+      resolution.visitAll(coordinates);
+
+      List<CompletableFuture<ArtifactContainer>> results = coordinates.stream()
+              .map(this::getContainer)
+              .collect(Collectors.toList());
+
+      // Artifacts in a dependency cycle would never complete, so look for cycles
+      // once the full graph is known instead of waiting for them forever
+      await(resolution.discovered);
+      CyclicalDependencyException exception = resolution.findCycle(coordinates);
+      if (exception != null) {
+        exception.getCoordinates().stream()
+                .map(futures::remove)
+                .filter(Objects::nonNull)
+                .forEach(future -> future.completeExceptionally(exception));
+        throw exception;
       }
-      return artifactDependencies;
-    } catch (CyclicalDependencyException e) {
-      e.addCoordinate(coordinate);
-      throw e;
+
+      return results.stream().map(Resolver::await).collect(Collectors.toList());
+    } finally {
+      RESOLVE_ALL_TIMER.stop(start);
     }
   }
 
-  public ArtifactContainer resolve(Coordinate coordinate) {
-    if (artifacts.containsKey(coordinate)) {
-      ArtifactContainer container = artifacts.get(coordinate);
-      if (container != null) {
-        return container;
-      }
-      throw new CyclicalDependencyException(coordinate);
-    }
-    artifacts.put(coordinate, null);
-
-    ArtifactContainer container = artifactCache.resolve(
-            this, coordinate,
-            () -> {
-              MavenResolvedArtifact resolvedArtifact = resolveMavenArtifact(coordinate);
-              MavenArtifactInfo[] dependencies = resolvedArtifact.getDependencies();
-              File file = resolvedArtifact.asFile();
-
-              try {
-                Set<ArtifactContainer> artifactDependencies =  Arrays.stream(dependencies)
-                        .map(dependency -> resolve(Coordinate.fromMaven(dependency.getCoordinate())))
-                        .collect(Collectors.toSet());
-                return new ArtifactContainerBuilder(coordinate, artifactDependencies).build(file);
-              } catch (CyclicalDependencyException e) {
-                e.addCoordinate(coordinate);
-                throw e;
+  private CompletableFuture<ArtifactContainer> getContainer(Coordinate coordinate) {
+    CompletableFuture<ArtifactContainer> existing = futures.get(coordinate);
+    if (existing != null) {
+      return existing;
+    }
+    CompletableFuture<ArtifactContainer> future = new CompletableFuture<>();
+    existing = futures.putIfAbsent(coordinate, future);
+    if (existing != null) {
+      return existing;
+    }
+
+    getSource(coordinate)
+            .thenComposeAsync(this::build, executor)
+            .whenComplete((container, throwable) -> {
+              if (throwable != null) {
+                // Forgotten before anyone sees the failure, so that resolving it again retries it
+                futures.remove(coordinate, future);
+                future.completeExceptionally(unwrap(throwable));
+              } else {
+                artifacts.put(coordinate, container);
+                future.complete(container);
               }
             });
+    return future;
+  }
+
+  private CompletableFuture<ArtifactContainer> build(ArtifactSource source) {
+    List<CompletableFuture<ArtifactContainer>> dependencies = source.getDependencies().stream()
+            .map(this::getContainer)
+            .collect(Collectors.toList());
+
+    return CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+            .thenApplyAsync(ignored -> {
+              Set<ArtifactContainer> artifactDependencies = dependencies.stream()
+                      .map(CompletableFuture::join)
+                      .collect(Collectors.toSet());
+              ArtifactContainer container = source.build(artifactDependencies);
+              classIndex.add(container);
+              return container;
+            }, executor);
+  }
+
+  private CompletableFuture<ArtifactSource> getSource(Coordinate coordinate) {
+    return sources.computeIfAbsent(coordinate,
+            key -> CompletableFuture.supplyAsync(() -> loadSource(key), executor));
+  }
+
+  private ArtifactSource loadSource(Coordinate coordinate) {
+    MavenResolvedArtifact resolvedArtifact = resolvedArtifacts.remove(coordinate);
+    IncompleteArtifact cached = artifactCache.load(coordinate);
+    if (cached != null) {
+      return new ArtifactSource(coordinate, cached.getDependencies(),
+              artifactDependencies -> cached.complete(artifactDependencies, artifactIndex));
+    }
+
+    Set<Coordinate> dependencies;
+    File file;
+    if (localRepository != null) {
+      long start = LOCAL_REPOSITORY_TIMER.start();
+      file = localRepository.getFile(coordinate);
+      dependencies = localRepository.getDependencies(coordinate);
+      LOCAL_REPOSITORY_TIMER.stop(start);
+    } else {
+      if (resolvedArtifact == null) {
+        resolvedArtifact = resolveMavenArtifact(coordinate);
+      }
+      dependencies = Arrays.stream(resolvedArtifact.getDependencies())
+              .map(dependency -> Coordinate.fromMaven(dependency.getCoordinate()))
+              .collect(Collectors.toSet());
+      file = resolvedArtifact.asFile();
+    }
+
+    return new ArtifactSource(coordinate, dependencies,
+            artifactDependencies -> analyze(coordinate, file, null, artifactDependencies));
+  }
+
+  /**
+   * Analyzes the artifact unless it's in the cache. Snapshots are looked up by the digest of their content.
+   */
+  private ArtifactContainer analyze(Coordinate coordinate, File file, ClassManifest manifest, Set<ArtifactContainer> dependencies) {
+    long start = ANALYZE_TIMER.start();
+    byte[] contentDigest = coordinate.isSnapshot() ? getContentDigest(coordinate, file, manifest, dependencies) : null;
+    try (Closeable ignored = artifactCache.lock(coordinate)) {
+      // Another process may have analyzed it while we were waiting for the lock
+      IncompleteArtifact analyzed = artifactCache.load(coordinate, contentDigest);
+      if (analyzed != null) {
+        return analyzed.complete(dependencies, artifactIndex);
+      }
+      ArtifactContainer container = new ArtifactContainerBuilder(coordinate, dependencies)
+              .classIndex(classIndex)
+              .artifactIndex(artifactIndex)
+              .classManifest(manifest)
+              .build(file);
+      artifactCache.store(container, contentDigest);
+      return container;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      ANALYZE_TIMER.stop(start);
+    }
+  }
+
+  private byte[] getContentDigest(Coordinate coordinate, File file, ClassManifest manifest, Set<ArtifactContainer> dependencies) {
+    long start = DIGEST_TIMER.start();
+    ContentDigest digest = new ContentDigest().addFile(file, manifest);
+
+    // Which dependency each class comes from is part of the analysis
+    dependencies.stream()
+            .map(ArtifactContainer::getCoordinate)
+            .sorted(Comparator.comparing(Coordinate::toString))
+            .forEach(dependency -> digest.addString(dependency.toString()));
+
+    // Every snapshot among the transitive dependencies can change too, even behind a release
+    Set<ArtifactContainer> visited = new HashSet<>();
+    Deque<ArtifactContainer> queue = new ArrayDeque<>(dependencies);
+    while (!queue.isEmpty()) {
+      ArtifactContainer dependency = queue.poll();
+      if (visited.add(dependency)) {
+        queue.addAll(dependency.getDependencies());
+      }
+    }
+    visited.stream()
+            .map(ArtifactContainer::getCoordinate)
+            .filter(contentDigests::containsKey)
+            .sorted(Comparator.comparing(Coordinate::toString))
+            .forEach(snapshot -> {
+              digest.addString(snapshot.toString());
+              digest.addBytes(contentDigests.get(snapshot));
+            });
 
-    artifacts.put(coordinate, container);
-    return container;
+    byte[] contentDigest = digest.finish();
+    contentDigests.put(coordinate, contentDigest);
+    DIGEST_TIMER.stop(start);
+    return contentDigest;
   }
 
   private static MavenResolvedArtifact resolveMavenArtifact(Coordinate coordinate) {
     logger.info("Resolving artifact from coordinate: {}", coordinate);
-    return Maven.resolver()
-              .resolve(coordinate.toString())
-              .withoutTransitivity()
-              .asSingleResolvedArtifact();
+    long start = MAVEN_TIMER.start();
+    try {
+      return MAVEN_RESOLVER.get()
+                .resolve(coordinate.toString())
+                .withoutTransitivity()
+                .asSingleResolvedArtifact();
+    } catch (RuntimeException e) {
+      // The session may still hold the coordinate, so it can't be used for anything else
+      MAVEN_RESOLVER.remove();
+      throw e;
+    } finally {
+      long nanos = MAVEN_TIMER.stop(start);
+      // Not timed unless metrics are enabled
+      if (Metrics.ENABLED) {
+        logger.debug("Resolved {} in {} ms", coordinate, TimeUnit.NANOSECONDS.toMillis(nanos));
+      }
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    while (throwable instanceof CompletionException && throwable.getCause() != null) {
+      throwable = throwable.getCause();
+    }
+    return throwable;
+  }
+
+  private static ExecutorService createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            THREADS, THREADS, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+              Thread thread = new Thread(runnable, "deps-resolver-" + THREAD_COUNTER.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Tracks the part of the graph that is reachable from one call to resolveAll.
+   */
+  private class Resolution {
+    // Map of artifact name -> declared dependencies
+    private final Map<Coordinate, Set<Coordinate>> edges = new ConcurrentHashMap<>();
+    private final Set<Coordinate> visited = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CompletableFuture<Void> discovered = new CompletableFuture<>();
+
+    void visitAll(Collection<Coordinate> coordinates) {
+      pending.incrementAndGet();
+      coordinates.forEach(this::visit);
+      done();
+    }
+
+    private void visit(Coordinate coordinate) {
+      if (!visited.add(coordinate)) {
+        return;
+      }
+      pending.incrementAndGet();
+      getSource(coordinate).whenComplete((source, throwable) -> {
+        if (source != null) {
+          edges.put(coordinate, source.getDependencies());
+          source.getDependencies().forEach(this::visit);
+        } else {
+          // No point in waiting for the rest of the graph
+          discovered.completeExceptionally(unwrap(throwable));
+        }
+        done();
+      });
+    }
+
+    private void done() {
+      if (pending.decrementAndGet() == 0) {
+        discovered.complete(null);
+      }
+    }
+
+    CyclicalDependencyException findCycle(Collection<Coordinate> coordinates) {
+      Set<Coordinate> finished = new HashSet<>();
+      for (Coordinate coordinate : coordinates) {
+        CyclicalDependencyException exception = findCycle(coordinate, new LinkedHashSet<>(), finished);
+        if (exception != null) {
+          return exception;
+        }
+      }
+      return null;
+    }
+
+    private CyclicalDependencyException findCycle(Coordinate coordinate, Set<Coordinate> path, Set<Coordinate> finished) {
+      if (finished.contains(coordinate)) {
+        return null;
+      }
+      if (!path.add(coordinate)) {
+        return new CyclicalDependencyException(coordinate);
+      }
+      for (Coordinate dependency : edges.getOrDefault(coordinate, Set.of())) {
+        CyclicalDependencyException exception = findCycle(dependency, path, finished);
+        if (exception != null) {
+          exception.addCoordinate(coordinate);
+          return exception;
+        }
+      }
+      path.remove(coordinate);
+      finished.add(coordinate);
+      return null;
+    }
   }
 
   public List<ArtifactContainer> getRoots() {
@@ -161,60 +573,95 @@ public class Resolver {
     return artifacts;
   }
 
+  public ClassIndex getClassIndex() {
+    return classIndex;
+  }
+
+  boolean isModule(Coordinate coordinate) {
+    return modules.containsKey(coordinate);
+  }
+
+  /**
+   * @return the pom files and build output of the project modules, if created from a project
+   */
+  List<File> getProjectFiles() {
+    List<File> files = new ArrayList<>();
+    for (ProjectModule module : modules.values()) {
+      if (module.getPomFile() != null) {
+        files.add(module.getPomFile());
+      }
+      if (module.getOutput() != null) {
+        files.add(module.getOutput());
+      }
+    }
+    return files;
+  }
+
   public void printDependencyTree() {
-    System.out.println("Dependency tree:");
-    printDependencies("  ", new HashMap<>(), roots, new AtomicInteger());
+    reportDependencyTree(new TextReporter(System.out));
+  }
+
+  /**
+   * Walks the dependency tree from the roots, reporting each artifact as it is found.
+   */
+  public void reportDependencyTree(Reporter reporter) {
+    reporter.startDependencyTree();
+    reportDependencies(reporter, 0, new HashMap<>(), roots, new AtomicInteger());
+    reporter.flush();
   }
 
-  private void printDependencies(String indent,
-                                 Map<ArtifactContainer, Integer> visited,
-                                 Collection<ArtifactContainer> artifacts,
-                                 AtomicInteger currentLine) {
-    String nextIndent = indent + "  ";
+  private void reportDependencies(Reporter reporter,
+                                  int depth,
+                                  Map<ArtifactContainer, Integer> visited,
+                                  Collection<ArtifactContainer> artifacts,
+                                  AtomicInteger currentLine) {
     for (ArtifactContainer value : artifacts) {
-      Set<ArtifactContainer> dependencies = value.getDependencies();
       Integer lineNumber = visited.get(value);
       if (lineNumber != null) {
-        String s = indent + value.getCoordinate() + " (see #" + lineNumber + ")";
-        System.out.println("     " + s);
+        reporter.repeatedDependency(depth, lineNumber, value);
       } else {
-        String s = indent + value.getCoordinate();
-        printWithLine(currentLine, s);
-        visited.put(value, currentLine.get());
-
-        if (!dependencies.isEmpty()) {
-          //System.out.println("     " + nextIndent + "actual:");
-          //value.printDependencies(nextIndent + "  ");
-          //System.out.println("     " + nextIndent + "declared:");
-          printDependencies(nextIndent + "  ", visited, dependencies, currentLine);
-        }
+        int line = currentLine.incrementAndGet();
+        reporter.dependency(depth, line, value);
+        visited.put(value, line);
+        reportDependencies(reporter, depth + 1, visited, value.getDependencies(), currentLine);
       }
     }
   }
 
-  private void printWithLine(AtomicInteger currentLine, String s) {
-    int num = currentLine.incrementAndGet();
-    System.out.printf("%3d: %s\n", num, s);
+  public void printUnusedWarnings() {
+    reportUnusedWarnings(new TextReporter(System.out));
   }
 
-  public void printUnusedWarnings() {
+  /**
+   * Reports all artifacts in the graph that have unused dependencies.
+   */
+  public void reportUnusedWarnings(Reporter reporter) {
     Set<ArtifactContainer> unused = artifacts.values().stream()
             .filter(container -> !container.getUnusedDependencies().isEmpty())
             .collect(Collectors.toSet());
 
     if (!unused.isEmpty()) {
-      System.out.println("Unused dependencies:");
-      unused.forEach(ArtifactContainer::printUnusedDependencies);
+      reporter.startUnusedWarnings();
+      unused.forEach(container -> reporter.unusedDependencies(container, container.getUnusedDependencies()));
     }
+    reporter.flush();
   }
 
   public void printUndeclaredWarnings() {
+    reportUndeclaredWarnings(new TextReporter(System.out));
+  }
+
+  /**
+   * Reports all artifacts in the graph that have undeclared dependencies.
+   */
+  public void reportUndeclaredWarnings(Reporter reporter) {
     Set<ArtifactContainer> undeclared = artifacts.values().stream()
             .filter(container -> !container.getUndeclared().isEmpty())
             .collect(Collectors.toSet());
     if (!undeclared.isEmpty()) {
-      System.out.println("Undeclared dependencies:");
-      undeclared.forEach(ArtifactContainer::printUndeclaredDependencies);
+      reporter.startUndeclaredWarnings();
+      undeclared.forEach(container -> reporter.undeclaredDependencies(container, container.getUndeclared()));
     }
+    reporter.flush();
   }
 }
@@ -0,0 +1,96 @@
+package se.krka.deps;
+
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Open addressing hash table keyed by a segment of a name, such as one package in a class name,
+ * that is looked up directly in the name without creating a substring.
+ */
+class SegmentTable<V> {
+  private static final String[] NO_NAMES = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private String[] names = NO_NAMES;
+  private Object[] values = NO_VALUES;
+  private int size;
+
+  /**
+   * @return the value of name[start, end), or null
+   */
+  @SuppressWarnings("unchecked")
+  V get(String name, int start, int end) {
+    if (size == 0) {
+      return null;
+    }
+    int index = find(name, start, end);
+    return (V) values[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  V computeIfAbsent(String name, int start, int end, Supplier<V> factory) {
+    if (2 * (size + 1) > names.length) {
+      rehash(Math.max(4, 2 * names.length));
+    }
+    int index = find(name, start, end);
+    if (names[index] == null) {
+      names[index] = name.substring(start, end);
+      values[index] = factory.get();
+      size++;
+    }
+    return (V) values[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  void forEach(BiConsumer<String, V> consumer) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] != null) {
+        consumer.accept(names[i], (V) values[i]);
+      }
+    }
+  }
+
+  // The slot of name[start, end), or the empty slot where it would be added
+  private int find(String name, int start, int end) {
+    int length = end - start;
+    int mask = names.length - 1;
+    int index = mix(hash(name, start, end)) & mask;
+    String existing;
+    while ((existing = names[index]) != null) {
+      if (existing.length() == length && name.regionMatches(start, existing, 0, length)) {
+        return index;
+      }
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private void rehash(int capacity) {
+    String[] oldNames = names;
+    Object[] oldValues = values;
+    names = new String[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldNames.length; i++) {
+      String name = oldNames[i];
+      if (name != null) {
+        int index = find(name, 0, name.length());
+        names[index] = name;
+        values[index] = oldValues[i];
+      }
+    }
+  }
+
+  // Same as String.hashCode() of the substring
+  private static int hash(String s, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + s.charAt(i);
+    }
+    return hash;
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,92 @@
+package se.krka.deps;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable set of names, stored as a sorted array of ids in a {@link SymbolTable}.
+ */
+class SymbolSet extends AbstractSet<String> {
+  private static final int[] NO_IDS = new int[0];
+
+  private final SymbolTable symbols;
+  private final int[] ids;
+
+  private SymbolSet(SymbolTable symbols, int[] ids) {
+    this.symbols = symbols;
+    this.ids = ids;
+  }
+
+  static SymbolSet of(SymbolTable symbols, IntHashSet ids) {
+    return of(symbols, ids.toSortedArray());
+  }
+
+  /**
+   * @param ids sorted ids, which must not be modified afterwards
+   */
+  static SymbolSet of(SymbolTable symbols, int[] ids) {
+    return new SymbolSet(symbols, ids.length == 0 ? NO_IDS : ids);
+  }
+
+  static SymbolSet of(SymbolTable symbols, Collection<String> names) {
+    if (names instanceof LazySymbolSet) {
+      names = ((LazySymbolSet) names).get();
+    }
+    if (names instanceof SymbolSet && ((SymbolSet) names).symbols == symbols) {
+      return (SymbolSet) names;
+    }
+    IntHashSet ids = new IntHashSet();
+    for (String name : names) {
+      ids.add(symbols.getId(name));
+    }
+    return of(symbols, ids);
+  }
+
+  void forEachId(IntConsumer consumer) {
+    for (int id : ids) {
+      consumer.accept(id);
+    }
+  }
+
+  boolean containsId(int id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof String)) {
+      return false;
+    }
+    int id = symbols.findId((String) o);
+    return id >= 0 && containsId(id);
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < ids.length;
+      }
+
+      @Override
+      public String next() {
+        if (index >= ids.length) {
+          throw new NoSuchElementException();
+        }
+        return symbols.getName(ids[index++]);
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return ids.length;
+  }
+}
@@ -0,0 +1,56 @@
+package se.krka.deps;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared instances of the small sets of artifact names that the mappings of every artifact point to.
+ * Nearly all mappings in a graph point to one of a few sets, like [com.google.guava:guava], so each
+ * distinct set is only stored once per {@link SymbolTable}. The pool is never cleared, it lives
+ * as long as its table does, see {@link SymbolTable#getSetPool()}.
+ */
+class SymbolSetPool {
+  private final SymbolTable symbols;
+  private final Map<Key, SymbolSet> sets = new ConcurrentHashMap<>();
+
+  SymbolSetPool(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * @return the shared set of the names with these ids
+   */
+  SymbolSet intern(IntHashSet ids) {
+    Key key = new Key(ids.toSortedArray());
+    SymbolSet set = sets.get(key);
+    if (set != null) {
+      return set;
+    }
+    return sets.computeIfAbsent(key, k -> SymbolSet.of(symbols, k.ids));
+  }
+
+  int size() {
+    return sets.size();
+  }
+
+  private static class Key {
+    private final int[] ids;
+    private final int hash;
+
+    private Key(int[] ids) {
+      this.ids = ids;
+      this.hash = Arrays.hashCode(ids);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(ids, ((Key) o).ids);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package se.krka.deps;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Gives each class name, artifact name and coordinate a dense int id, so that every
+ * artifact can refer to them with primitive ids instead of keeping its own copies.
+ *
+ * Lookups of existing names are lock free, only adding new names is synchronized.
+ *
+ * A table only grows. The default table is replaced by {@link #startEpoch()}, and the old one
+ * is reclaimed once nothing built with it is reachable, since every {@link SymbolSet} refers
+ * to its own table.
+ */
+class SymbolTable {
+  // Replaced by startEpoch()
+  private static volatile SymbolTable current = new SymbolTable();
+
+  // Open addressing table of id + 1, where 0 is an empty slot
+  private volatile AtomicIntegerArray table = new AtomicIntegerArray(1 << 12);
+  private volatile String[] names = new String[1 << 11];
+  private int size;
+
+  private final Map<Coordinate, Integer> coordinateIds = new ConcurrentHashMap<>();
+  private volatile Coordinate[] coordinates = new Coordinate[256];
+  private int coordinateCount;
+
+  private final SymbolSetPool setPool = new SymbolSetPool(this);
+
+  static SymbolTable getDefault() {
+    return current;
+  }
+
+  /**
+   * Replaces the default table with an empty one. A single analysis must not mix the two, so this
+   * is only safe while no analysis is running, see {@link Daemon}.
+   */
+  static void startEpoch() {
+    setDefault(new SymbolTable());
+  }
+
+  static void setDefault(SymbolTable symbols) {
+    current = symbols;
+  }
+
+  /**
+   * @return the pool of sets of names in this table
+   */
+  SymbolSetPool getSetPool() {
+    return setPool;
+  }
+
+  int getId(String name) {
+    int id = findId(name);
+    if (id >= 0) {
+      return id;
+    }
+    return add(name);
+  }
+
+  /**
+   * @return the id of name, or -1 if it has never been added
+   */
+  int findId(String name) {
+    AtomicIntegerArray table = this.table;
+    int mask = table.length() - 1;
+    int index = mix(name.hashCode()) & mask;
+    while (true) {
+      int slot = table.get(index);
+      if (slot == 0) {
+        return -1;
+      }
+      if (names[slot - 1].equals(name)) {
+        return slot - 1;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  String getName(int id) {
+    return names[id];
+  }
+
+  /**
+   * @return the shared instance that is equal to name
+   */
+  String intern(String name) {
+    return getName(getId(name));
+  }
+
+  synchronized int getId(Coordinate coordinate) {
+    Integer id = coordinateIds.get(coordinate);
+    if (id != null) {
+      return id;
+    }
+    Coordinate[] current = coordinates;
+    if (coordinateCount == current.length) {
+      current = Arrays.copyOf(current, 2 * coordinateCount);
+    }
+    current[coordinateCount] = coordinate;
+    coordinates = current;
+    coordinateIds.put(coordinate, coordinateCount);
+    return coordinateCount++;
+  }
+
+  Coordinate getCoordinate(int id) {
+    return coordinates[id];
+  }
+
+  /**
+   * @return the shared instance that is equal to coordinate
+   */
+  Coordinate intern(Coordinate coordinate) {
+    Integer id = coordinateIds.get(coordinate);
+    return getCoordinate(id != null ? id : getId(coordinate));
+  }
+
+  private synchronized int add(String name) {
+    int existing = findId(name);
+    if (existing >= 0) {
+      return existing;
+    }
+    String[] current = names;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, 2 * size);
+    }
+    current[size] = name;
+    // Publish the name before the table slot that refers to it
+    names = current;
+    if (2 * (size + 1) > table.length()) {
+      table = rehash(2 * table.length());
+    }
+    insert(table, size, name);
+    return size++;
+  }
+
+  private AtomicIntegerArray rehash(int capacity) {
+    AtomicIntegerArray rehashed = new AtomicIntegerArray(capacity);
+    for (int id = 0; id < size; id++) {
+      insert(rehashed, id, names[id]);
+    }
+    return rehashed;
+  }
+
+  private static void insert(AtomicIntegerArray table, int id, String name) {
+    int mask = table.length() - 1;
+    int index = mix(name.hashCode()) & mask;
+    while (table.get(index) != 0) {
+      index = (index + 1) & mask;
+    }
+    table.set(index, id + 1);
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,119 @@
+package se.krka.deps;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The human readable format, with numbered lines in the dependency tree.
+ */
+public class TextReporter extends WriterReporter {
+  // Written before each line when listing the dependencies of a single artifact, else null
+  private final String indent;
+
+  public TextReporter(OutputStream output) {
+    super(output);
+    this.indent = null;
+  }
+
+  /**
+   * Lists the dependencies of a single artifact like {@link ArtifactContainer#printDependencies(String)},
+   * with each mapping and each unused dependency on a line of its own.
+   */
+  public TextReporter(OutputStream output, String indent) {
+    super(output);
+    this.indent = indent;
+  }
+
+  public TextReporter(Writer writer) {
+    super(writer);
+    this.indent = null;
+  }
+
+  public TextReporter(Writer writer, String indent) {
+    super(writer);
+    this.indent = indent;
+  }
+
+  @Override
+  public void startDependencyTree() {
+    write("Dependency tree:\n");
+  }
+
+  @Override
+  public void dependency(int depth, int line, ArtifactContainer artifact) {
+    String number = Integer.toString(line);
+    writeSpaces(3 - number.length());
+    write(number);
+    write(": ");
+    writeIndent(depth);
+    write(artifact.getCoordinate().toString());
+    write('\n');
+  }
+
+  @Override
+  public void repeatedDependency(int depth, int line, ArtifactContainer artifact) {
+    writeSpaces(5);
+    writeIndent(depth);
+    write(artifact.getCoordinate().toString());
+    write(" (see #");
+    write(Integer.toString(line));
+    write(")\n");
+  }
+
+  @Override
+  public void mapping(ArtifactContainer artifact, String prefix, Set<String> providers) {
+    if (indent != null) {
+      write(indent);
+    }
+    write(prefix);
+    if (providers.isEmpty()) {
+      write(" expected in runtime\n");
+    } else {
+      write(" found in ");
+      write(providers.toString());
+      write('\n');
+    }
+  }
+
+  @Override
+  public void startUnusedWarnings() {
+    write("Unused dependencies:\n");
+  }
+
+  @Override
+  public void unusedDependencies(ArtifactContainer artifact, Set<ArtifactContainer> unused) {
+    if (indent != null) {
+      for (ArtifactContainer dependency : unused) {
+        write(indent);
+        write("Unused: ");
+        write(dependency.getCoordinate().toString());
+        write('\n');
+      }
+      return;
+    }
+    Set<String> names = unused.stream().map(ArtifactContainer::getArtifactName).collect(Collectors.toSet());
+    write(artifact.getCoordinate().toString());
+    write(" has unused dependencies on ");
+    write(names.toString());
+    write('\n');
+  }
+
+  @Override
+  public void startUndeclaredWarnings() {
+    write("Undeclared dependencies:\n");
+  }
+
+  @Override
+  public void undeclaredDependencies(ArtifactContainer artifact, Set<ArtifactContainer> undeclared) {
+    write(artifact.getCoordinate().toString());
+    write(" has undeclared dependencies on ");
+    write(undeclared.toString());
+    write('\n');
+  }
+
+  private void writeIndent(int depth) {
+    writeSpaces(2 + 4 * depth);
+  }
+}
@@ -0,0 +1,101 @@
+package se.krka.deps;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The usage mappings of an artifact, compiled for looking up which artifacts provide a class.
+ *
+ * Exact class names are kept in a hash map, and the "package.**" and "package.*" prefixes in a trie
+ * of packages that is walked along the class name without creating substrings. A lookup allocates
+ * nothing and takes time bounded by the depth of the package.
+ */
+class UsageMatcher {
+  // Class name -> artifacts, for the mappings of single classes
+  private final Map<String, Set<String>> classes = new HashMap<>();
+
+  // The "**" and "*" mappings, or null
+  private Set<String> all;
+  private Set<String> rootClasses;
+
+  private final Package root = new Package();
+
+  UsageMatcher(Map<String, Set<String>> mappings) {
+    mappings.forEach((prefix, usages) -> {
+      if (prefix.equals("**")) {
+        all = usages;
+      } else if (prefix.equals("*")) {
+        rootClasses = usages;
+      } else if (prefix.endsWith(".**")) {
+        getPackage(prefix, prefix.length() - 3).all = usages;
+      } else if (prefix.endsWith(".*")) {
+        getPackage(prefix, prefix.length() - 2).classes = usages;
+      } else {
+        classes.put(prefix, usages);
+      }
+    });
+  }
+
+  private Package getPackage(String prefix, int end) {
+    Package node = root;
+    int start = 0;
+    while (start <= end) {
+      int period = prefix.indexOf('.', start);
+      if (period < 0 || period > end) {
+        period = end;
+      }
+      node = node.packages.computeIfAbsent(prefix, start, period, Package::new);
+      start = period + 1;
+    }
+    return node;
+  }
+
+  /**
+   * Looks for the class itself, then "**", then "*" for classes without a package, and otherwise
+   * "package.**" and then "package.*" from the package of the class up to its top level package.
+   *
+   * @return the artifacts that provide the class, or an empty set if no mapping matches
+   */
+  Set<String> getUsages(String className) {
+    Set<String> usages = classes.get(className);
+    if (usages != null) {
+      return usages;
+    }
+    if (all != null) {
+      return all;
+    }
+
+    int lastPeriod = className.lastIndexOf('.');
+    if (lastPeriod == -1) {
+      return rootClasses != null ? rootClasses : Set.of();
+    }
+
+    // The deepest package with a mapping wins
+    usages = Set.of();
+    Package node = root;
+    int start = 0;
+    while (start <= lastPeriod) {
+      int period = className.indexOf('.', start);
+      node = node.packages.get(className, start, period);
+      if (node == null) {
+        break;
+      }
+      if (node.all != null) {
+        usages = node.all;
+      } else if (node.classes != null) {
+        usages = node.classes;
+      }
+      start = period + 1;
+    }
+    return usages;
+  }
+
+  private static class Package {
+    private final SegmentTable<Package> packages = new SegmentTable<>();
+
+    // The "package.**" and "package.*" mappings, or null
+    private Set<String> all;
+    private Set<String> classes;
+  }
+}
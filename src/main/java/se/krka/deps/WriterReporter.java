@@ -0,0 +1,59 @@
+package se.krka.deps;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base class for reporters that write text to a stream. Output is buffered without any locking,
+ * and the stream is only flushed at the end of each report.
+ */
+abstract class WriterReporter implements Reporter {
+  private final Writer out;
+
+  WriterReporter(OutputStream output) {
+    this(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  WriterReporter(Writer writer) {
+    this.out = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, 64 * 1024);
+  }
+
+  void write(String s) {
+    try {
+      out.write(s);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  void write(char c) {
+    try {
+      out.write(c);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  void writeSpaces(int count) {
+    for (int i = 0; i < count; i++) {
+      write(' ');
+    }
+  }
+
+  Writer getWriter() {
+    return out;
+  }
+
+  @Override
+  public void flush() {
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package se.krka.deps;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactCacheTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ArtifactContainer dependency;
+  private ArtifactContainer transitive;
+  private ArtifactContainer container;
+
+  @Before
+  public void setUp() {
+    transitive = new ArtifactContainer(
+            Coordinate.fromString("com.example:transitive:1.0"),
+            Set.of(), Set.of(), Set.of(),
+            Set.of("com.example.transitive.Used"),
+            Map.of(), Set.of());
+    dependency = new ArtifactContainer(
+            Coordinate.fromString("com.example:dependency:jar:sources:2.0"),
+            Set.of(transitive), Set.of(transitive), Set.of(),
+            Set.of("com.example.dependency.Unused"),
+            Map.of("com.example.transitive.**", Set.of("com.example:transitive")),
+            Set.of());
+    container = new ArtifactContainer(
+            Coordinate.fromString("com.example:root:3.0"),
+            Set.of(dependency), Set.of(dependency, transitive), Set.of(dependency),
+            Set.of("com.example.root.A", "com.example.root.B", "com.example.root.\u00e5\u00e4\u00f6"),
+            new TreeMap<>(Map.of(
+                    "com.example.transitive.**", Set.of("com.example:transitive"),
+                    "java.**", Set.of())),
+            Set.of(transitive));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (boolean compress : new boolean[] {false, true}) {
+      ArtifactCache cache = new ArtifactCache(new DirectoryStore(new File(temporaryFolder.getRoot(), "cache-" + compress)), null, null, compress);
+      assertNull(cache.load(container.getCoordinate()));
+
+      cache.store(container);
+      IncompleteArtifact loaded = cache.load(container.getCoordinate());
+      assertTrue(loaded.getDefinedClasses() instanceof LazySymbolSet);
+      assertEquals(3, loaded.getDefinedClasses().size());
+      assertLoaded(loaded);
+    }
+  }
+
+  @Test
+  public void testIndexedFileStore() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "indexed.db");
+    IndexedFileStore store = IndexedFileStore.open(file);
+    ArtifactCache cache = new ArtifactCache(store, null, null, true);
+    assertNull(cache.load(container.getCoordinate()));
+
+    cache.store(container);
+    cache.store(container);
+    assertLoaded(cache.load(container.getCoordinate()));
+
+    store.write("other", new byte[] {1, 2, 3});
+    long size = file.length();
+    store.compact();
+    assertTrue(file.length() < size);
+    assertLoaded(cache.load(container.getCoordinate()));
+    assertArrayEquals(new byte[] {1, 2, 3}, store.read("other"));
+    assertNull(store.read("missing"));
+  }
+
+  @Test
+  public void testMigratesLegacyEntries() throws Exception {
+    File dir = temporaryFolder.newFolder("legacy");
+    File legacyFile = new File(dir, "com.example_root_jar_3.0.json.gz");
+    JSONObject object = JsonWriter.toJsonObject(container);
+    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(legacyFile)), StandardCharsets.UTF_8)) {
+      object.write(writer);
+    }
+
+    ArtifactCache cache = new ArtifactCache(new DirectoryStore(dir), null, dir, true);
+    assertLoaded(cache.load(container.getCoordinate()));
+    assertFalse(legacyFile.exists());
+    assertTrue(new File(dir, "com.example_root_jar_3.0.deps").exists());
+
+    assertLoaded(cache.load(container.getCoordinate()));
+  }
+
+  @Test
+  public void testCorruptLegacyJsonIsMissing() throws Exception {
+    File dir = temporaryFolder.newFolder("legacy-json");
+    File legacyFile = new File(dir, "com.example_root_jar_3.0.json.gz");
+    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(legacyFile)), StandardCharsets.UTF_8)) {
+      JsonWriter.toJsonObject(container).write(writer);
+    }
+    byte[] data = Files.readAllBytes(legacyFile.toPath());
+    Files.write(legacyFile.toPath(), Arrays.copyOf(data, data.length / 2));
+
+    ArtifactCache cache = new ArtifactCache(new DirectoryStore(dir), null, dir, true);
+    assertNull(cache.load(container.getCoordinate()));
+
+    cache.store(container);
+    assertLoaded(cache.load(container.getCoordinate()));
+  }
+
+  @Test
+  public void testCorruptEntryIsMissing() throws Exception {
+    File dir = temporaryFolder.newFolder("corrupt");
+    ArtifactCache cache = new ArtifactCache(new DirectoryStore(dir), null, null, true);
+    cache.store(container);
+
+    File file = new File(dir, "com.example_root_jar_3.0.deps");
+    byte[] data = Files.readAllBytes(file.toPath());
+    data[data.length / 2] ^= 1;
+    Files.write(file.toPath(), data);
+    assertNull(cache.load(container.getCoordinate()));
+
+    cache.store(container);
+    assertLoaded(cache.load(container.getCoordinate()));
+    assertEquals(1, dir.list((d, name) -> name.endsWith(".deps")).length);
+  }
+
+  @Test
+  public void testCorruptLegacyEntryIsMissing() throws Exception {
+    File dir = temporaryFolder.newFolder("legacy-store");
+    new ArtifactCache(new DirectoryStore(dir), null, null, true).store(container);
+    File file = new File(dir, "com.example_root_jar_3.0.deps");
+    byte[] data = Files.readAllBytes(file.toPath());
+    Files.write(file.toPath(), Arrays.copyOf(data, data.length / 2));
+
+    ArtifactCache cache = new ArtifactCache(IndexedFileStore.open(new File(dir, "dependency-data.db")), null, dir, true);
+    assertNull(cache.load(container.getCoordinate()));
+
+    cache.store(container);
+    assertLoaded(cache.load(container.getCoordinate()));
+  }
+
+  @Test
+  public void testMemoryCache() throws Exception {
+    MemoryCache memory = new MemoryCache(1 << 20);
+    ArtifactCache first = new ArtifactCache(new DirectoryStore(temporaryFolder.newFolder("first")), memory, null, true);
+    ArtifactCache second = new ArtifactCache(new DirectoryStore(temporaryFolder.newFolder("second")), memory, null, true);
+
+    assertNull(second.load(container.getCoordinate()));
+    first.store(container);
+    assertLoaded(second.load(container.getCoordinate()));
+    assertEquals(1, memory.getHits());
+    assertEquals(1, memory.getMisses());
+
+    MemoryCache small = new MemoryCache(memory.getWeight());
+    small.put(IncompleteArtifact.of(container));
+    small.put(IncompleteArtifact.of(dependency));
+    assertEquals(1, small.getEvictions());
+    assertNull(small.get(container.getCoordinate()));
+    assertEquals(dependency.getCoordinate(), small.get(dependency.getCoordinate()).getCoordinate());
+  }
+
+  @Test
+  public void testMemoryCacheWeighsEncodedSections() throws Exception {
+    ArtifactCache cache = new ArtifactCache(new DirectoryStore(temporaryFolder.newFolder("weight")), null, null, true);
+    cache.store(container);
+    IncompleteArtifact loaded = cache.load(container.getCoordinate());
+
+    MemoryCache decoded = new MemoryCache(1 << 20);
+    decoded.put(IncompleteArtifact.of(container));
+    MemoryCache encoded = new MemoryCache(1 << 20);
+    encoded.put(loaded);
+    assertTrue(encoded.getWeight() > decoded.getWeight());
+
+    // Decoding releases the encoded sections
+    assertLoaded(loaded);
+    MemoryCache released = new MemoryCache(1 << 20);
+    released.put(loaded);
+    assertEquals(decoded.getWeight(), released.getWeight());
+  }
+
+  @Test
+  public void testSnapshotContentDigest() throws Exception {
+    ArtifactContainer snapshot = new ArtifactContainer(
+            Coordinate.fromString("com.example:snapshot:1.0-SNAPSHOT"),
+            Set.of(), Set.of(), Set.of(),
+            Set.of("com.example.snapshot.A"),
+            Map.of(), Set.of());
+    Coordinate coordinate = snapshot.getCoordinate();
+    byte[] first = new ContentDigest().addString("first").finish();
+    byte[] second = new ContentDigest().addString("second").finish();
+
+    File dir = temporaryFolder.newFolder("cache");
+    ArtifactCache cache = new ArtifactCache(new DirectoryStore(dir), new MemoryCache(1 << 20), null, true);
+    cache.store(snapshot);
+    assertNull(cache.load(coordinate, first));
+
+    cache.store(snapshot, first);
+    assertEquals(coordinate, cache.load(coordinate, first).getCoordinate());
+    assertNull(cache.load(coordinate));
+    assertNull(cache.load(coordinate, second));
+
+    // Replaces the entry of the old content
+    cache.store(snapshot, second);
+    ArtifactCache reopened = new ArtifactCache(new DirectoryStore(dir), null, null, true);
+    assertNull(reopened.load(coordinate, first));
+    assertArrayEquals(second, reopened.load(coordinate, second).getContentDigest());
+    assertEquals(1, dir.list((file, name) -> name.endsWith(".deps")).length);
+  }
+
+  private void assertLoaded(IncompleteArtifact artifact) {
+    assertEquals(container.getCoordinate(), artifact.getCoordinate());
+    assertEquals(Set.of(dependency.getCoordinate()), artifact.getDependencies());
+
+    ArtifactContainer loaded = artifact.complete(Set.of(dependency));
+    assertEquals(container.getDefinedClasses(), loaded.getDefinedClasses());
+    assertEquals(container.getMappings(), loaded.getMappings());
+    assertEquals(container.getFlattenedDependencies(), loaded.getFlattenedDependencies());
+    assertEquals(container.getUnusedDependencies(), loaded.getUnusedDependencies());
+    assertEquals(container.getUndeclared(), loaded.getUndeclared());
+  }
+}
@@ -0,0 +1,314 @@
+package se.krka.deps;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactContainerBuilderTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final Coordinate COORDINATE = Coordinate.fromString("junit:junit:4.12");
+
+  @Test
+  public void testParallelScanMatchesSerialScan() throws Exception {
+    File jarFile = getLocation(Test.class);
+
+    ArtifactContainer serial = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .scanParallelism(1)
+            .build(jarFile);
+    ArtifactContainer parallel = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .scanParallelism(4)
+            .build(jarFile);
+
+    assertTrue(serial.definesClass(Test.class.getName()));
+    assertEquals(serial.getDefinedClasses(), parallel.getDefinedClasses());
+    assertEquals(serial.getMappings(), parallel.getMappings());
+  }
+
+  @Test
+  public void testMappedJarFileMatchesJarFile() throws Exception {
+    File jarFile = getLocation(Test.class);
+
+    ArtifactContainer mapped = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .mappedJarFiles(true)
+            .build(jarFile);
+    ArtifactContainer streamed = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .mappedJarFiles(false)
+            .build(jarFile);
+
+    assertEquals(streamed.getDefinedClasses(), mapped.getDefinedClasses());
+    assertEquals(streamed.getMappings(), mapped.getMappings());
+  }
+
+  @Test
+  public void testMappedJarFileWithStoredEntries() throws Exception {
+    File jarFile = temporaryFolder.newFile("stored.jar");
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jarFile))) {
+      addEntry(outputStream, NodeTest.class, ZipEntry.STORED);
+      addEntry(outputStream, ArtifactContainerBuilderTest.class, ZipEntry.DEFLATED);
+    }
+
+    ArtifactContainer mapped = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .mappedJarFiles(true)
+            .build(jarFile);
+    ArtifactContainer streamed = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .mappedJarFiles(false)
+            .build(jarFile);
+
+    assertEquals(Set.of(NodeTest.class.getName(), ArtifactContainerBuilderTest.class.getName()),
+            mapped.getDefinedClasses());
+    assertEquals(streamed.getMappings(), mapped.getMappings());
+  }
+
+  @Test
+  public void testMappedJarFileFallsBackOnInvalidStoredSize() throws Exception {
+    File jarFile = temporaryFolder.newFile("invalid-size.jar");
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jarFile))) {
+      addEntry(outputStream, NodeTest.class, ZipEntry.STORED);
+    }
+    // Make the uncompressed size in the central directory larger than the stored data
+    growLastUncompressedSize(jarFile);
+
+    ArtifactContainer mapped = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .mappedJarFiles(true)
+            .build(jarFile);
+    assertEquals(Set.of(NodeTest.class.getName()), mapped.getDefinedClasses());
+  }
+
+  @Test
+  public void testMappedJarFileFallsBackOnBrokenEntry() throws Exception {
+    File jarFile = temporaryFolder.newFile("broken-entry.jar");
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jarFile))) {
+      for (int i = 0; i < 512; i++) {
+        addEntry(outputStream, "copy" + i + "/" + getPath(NodeTest.class), NodeTest.class, ZipEntry.DEFLATED);
+      }
+      addEntry(outputStream, ArtifactContainerBuilderTest.class, ZipEntry.DEFLATED);
+    }
+    // The central directory is still valid, but the last entry inflates to fewer bytes than it claims.
+    // JarFile doesn't check that size, so only the mapped scan fails, and only once it reaches the entry.
+    growLastUncompressedSize(jarFile);
+
+    for (int scanParallelism : new int[] {1, 4}) {
+      ArtifactContainer mapped = new ArtifactContainerBuilder(COORDINATE, Set.of())
+              .mappedJarFiles(true)
+              .scanParallelism(scanParallelism)
+              .build(jarFile);
+      assertEquals(Set.of(NodeTest.class.getName(), ArtifactContainerBuilderTest.class.getName()),
+              mapped.getDefinedClasses());
+    }
+  }
+
+  private static void growLastUncompressedSize(File jarFile) throws IOException {
+    byte[] bytes = Files.readAllBytes(jarFile.toPath());
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    int position = bytes.length - 4;
+    while (buffer.getInt(position) != 0x02014b50) {
+      position--;
+    }
+    buffer.putInt(position + 24, buffer.getInt(position + 24) + 1);
+    Files.write(jarFile.toPath(), bytes);
+  }
+
+  @Test
+  public void testMultiReleaseJarFile() throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+    File multiRelease = writeVersionedJar("multi-release.jar", manifest);
+    assertEffectiveClass(multiRelease, 8, NodeTest.class);
+    assertEffectiveClass(multiRelease, 11, SymbolTableTest.class);
+    assertEffectiveClass(multiRelease, 17, ClassFilterTest.class);
+
+    // The versioned entries are ignored without the manifest attribute
+    File plain = writeVersionedJar("plain.jar", null);
+    assertEffectiveClass(plain, 17, NodeTest.class);
+  }
+
+  private File writeVersionedJar(String name, Manifest manifest) throws IOException {
+    File jarFile = temporaryFolder.newFile(name);
+    String path = getPath(NodeTest.class);
+    try (JarOutputStream outputStream = manifest == null
+            ? new JarOutputStream(new FileOutputStream(jarFile))
+            : new JarOutputStream(new FileOutputStream(jarFile), manifest)) {
+      addEntry(outputStream, path, NodeTest.class, ZipEntry.DEFLATED);
+      addEntry(outputStream, "META-INF/versions/9/" + path, SymbolTableTest.class, ZipEntry.DEFLATED);
+      addEntry(outputStream, "META-INF/versions/17/" + path, ClassFilterTest.class, ZipEntry.STORED);
+      addEntry(outputStream, "META-INF/versions/99/" + path, ArtifactCacheTest.class, ZipEntry.DEFLATED);
+    }
+    return jarFile;
+  }
+
+  private static void assertEffectiveClass(File jarFile, int release, Class<?> expected) {
+    for (boolean mappedJarFiles : new boolean[] {true, false}) {
+      ArtifactContainer container = new ArtifactContainerBuilder(COORDINATE, Set.of())
+              .mappedJarFiles(mappedJarFiles)
+              .targetRelease(release)
+              .build(jarFile);
+      assertEquals(Set.of(expected.getName()), container.getDefinedClasses());
+    }
+  }
+
+  @Test
+  public void testIncrementalScanMatchesFullScan() throws Exception {
+    File directory = temporaryFolder.newFolder("classes");
+    for (Class<?> clazz : new Class<?>[] {NodeTest.class, ArtifactCacheTest.class, SymbolTableTest.class}) {
+      writeClass(directory, clazz, clazz);
+    }
+    ClassManifest manifest = ClassManifest.load(new File(temporaryFolder.getRoot(), "classes.manifest"), directory);
+    assertIncrementalScan(directory, manifest);
+
+    // Reused as is
+    assertIncrementalScan(directory, manifest);
+
+    // Deleted, changed and added class files
+    assertTrue(new File(directory, getPath(NodeTest.class)).delete());
+    writeClass(directory, ArtifactCacheTest.class, ArtifactContainerBuilderTest.class);
+    writeClass(directory, ClassFilterTest.class, ClassFilterTest.class);
+    assertIncrementalScan(directory, manifest);
+
+    // Reloaded from disk
+    assertIncrementalScan(directory, ClassManifest.load(new File(temporaryFolder.getRoot(), "classes.manifest"), directory));
+  }
+
+  @Test
+  public void testIncrementalScanDetectsRewriteWithSameModificationTime() throws Exception {
+    File directory = temporaryFolder.newFolder("racy");
+    writeClass(directory, NodeTest.class, NodeTest.class);
+    ClassManifest manifest = ClassManifest.load(new File(temporaryFolder.getRoot(), "racy.manifest"), directory);
+    assertIncrementalScan(directory, manifest);
+
+    // Same size and modification time, but it defines another class
+    Path path = new File(directory, getPath(NodeTest.class)).toPath();
+    FileTime lastModified = Files.getLastModifiedTime(path);
+    String original = NodeTest.class.getName().replace('.', '/');
+    String renamed = original.substring(0, original.length() - 1) + "x";
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, new String(bytes, StandardCharsets.ISO_8859_1)
+            .replace(original, renamed)
+            .getBytes(StandardCharsets.ISO_8859_1));
+    Files.setLastModifiedTime(path, lastModified);
+    assertEquals(bytes.length, Files.size(path));
+
+    ArtifactContainer incremental = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .classManifest(manifest)
+            .build(directory);
+    assertEquals(Set.of(renamed.replace('/', '.')), incremental.getDefinedClasses());
+  }
+
+  @Test
+  public void testUnchangedManifestIsNotRewritten() throws Exception {
+    File directory = temporaryFolder.newFolder("unchanged");
+    writeClass(directory, NodeTest.class, NodeTest.class);
+    // Old enough to be trusted without reading it again
+    Files.setLastModifiedTime(new File(directory, getPath(NodeTest.class)).toPath(), FileTime.fromMillis(0));
+    File manifestFile = new File(temporaryFolder.getRoot(), "unchanged.manifest");
+    ClassManifest manifest = ClassManifest.load(manifestFile, directory);
+    assertIncrementalScan(directory, manifest);
+    assertTrue(manifestFile.isFile());
+
+    FileTime saved = FileTime.fromMillis(1000);
+    Files.setLastModifiedTime(manifestFile.toPath(), saved);
+    assertIncrementalScan(directory, manifest);
+    assertIncrementalScan(directory, ClassManifest.load(manifestFile, directory));
+    assertEquals(saved, Files.getLastModifiedTime(manifestFile.toPath()));
+
+    writeClass(directory, ClassFilterTest.class, ClassFilterTest.class);
+    assertIncrementalScan(directory, manifest);
+    assertNotEquals(saved, Files.getLastModifiedTime(manifestFile.toPath()));
+  }
+
+  @Test
+  public void testPruneStaleManifests() throws Exception {
+    File manifestDir = temporaryFolder.newFolder("manifests");
+    File kept = temporaryFolder.newFolder("kept");
+    File deleted = temporaryFolder.newFolder("deleted");
+    for (File directory : new File[] {kept, deleted}) {
+      writeClass(directory, NodeTest.class, NodeTest.class);
+      new ArtifactContainerBuilder(COORDINATE, Set.of())
+              .classManifest(ClassManifest.load(new File(manifestDir, directory.getName() + ".manifest"), directory))
+              .build(directory);
+    }
+    Files.write(new File(manifestDir, "corrupt.manifest").toPath(), new byte[] {1, 2, 3});
+    Files.walk(deleted.toPath())
+            .sorted(Comparator.reverseOrder())
+            .forEach(path -> path.toFile().delete());
+
+    ClassManifest.prune(manifestDir);
+    assertEquals(List.of("kept.manifest"), List.of(manifestDir.list()));
+  }
+
+  private static void assertIncrementalScan(File directory, ClassManifest manifest) {
+    ArtifactContainer full = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .build(directory);
+    ArtifactContainer incremental = new ArtifactContainerBuilder(COORDINATE, Set.of())
+            .classManifest(manifest)
+            .build(directory);
+
+    assertEquals(full.getDefinedClasses(), incremental.getDefinedClasses());
+    assertEquals(full.getMappings(), incremental.getMappings());
+  }
+
+  private static void writeClass(File directory, Class<?> path, Class<?> content) throws IOException {
+    File file = new File(directory, getPath(path));
+    file.getParentFile().mkdirs();
+    try (InputStream inputStream = content.getClassLoader().getResourceAsStream(getPath(content))) {
+      Files.write(file.toPath(), inputStream.readAllBytes());
+    }
+  }
+
+  private static String getPath(Class<?> clazz) {
+    return clazz.getName().replace('.', '/') + ".class";
+  }
+
+  private static void addEntry(JarOutputStream outputStream, Class<?> clazz, int method) throws IOException {
+    addEntry(outputStream, getPath(clazz), clazz, method);
+  }
+
+  private static void addEntry(JarOutputStream outputStream, String name, Class<?> content, int method) throws IOException {
+    byte[] bytes;
+    try (InputStream inputStream = content.getClassLoader().getResourceAsStream(getPath(content))) {
+      bytes = inputStream.readAllBytes();
+    }
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(method);
+    if (method == ZipEntry.STORED) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      entry.setSize(bytes.length);
+      entry.setCompressedSize(bytes.length);
+      entry.setCrc(crc.getValue());
+    }
+    outputStream.putNextEntry(entry);
+    outputStream.write(bytes);
+    outputStream.closeEntry();
+  }
+
+  private static File getLocation(Class<?> clazz) throws URISyntaxException {
+    return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+}
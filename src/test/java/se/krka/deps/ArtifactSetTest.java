@@ -0,0 +1,67 @@
+package se.krka.deps;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactSetTest {
+  @Test
+  public void testSameAsHashSet() {
+    ArtifactIndex index = new ArtifactIndex();
+    List<ArtifactContainer> indexed = new ArrayList<>();
+    List<ArtifactContainer> plain = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      IncompleteArtifact artifact = new IncompleteArtifact(
+              Coordinate.fromString("com.example:artifact" + i + ":1.0"),
+              Set.of(), Set.of(), Map.of(), Set.of(), Set.of());
+      // Depends on a few earlier artifacts, spread over more than one word of bits
+      indexed.add(artifact.complete(getDependencies(indexed, i), index));
+      plain.add(artifact.complete(getDependencies(plain, i)));
+    }
+
+    for (int i = 0; i < indexed.size(); i++) {
+      Set<ArtifactContainer> flattened = indexed.get(i).getFlattenedDependencies();
+      assertTrue(flattened instanceof ArtifactSet);
+      Set<Coordinate> expected = new HashSet<>();
+      plain.get(i).getFlattenedDependencies().forEach(container -> expected.add(container.getCoordinate()));
+      Set<Coordinate> actual = new HashSet<>();
+      flattened.forEach(container -> actual.add(container.getCoordinate()));
+      assertEquals(expected, actual);
+      assertEquals(expected.size(), flattened.size());
+      for (ArtifactContainer container : indexed) {
+        assertEquals(expected.contains(container.getCoordinate()), flattened.contains(container));
+      }
+      assertFalse(flattened.contains(plain.get(0)));
+    }
+  }
+
+  @Test
+  public void testMixedIndexes() {
+    ArtifactContainer other = new IncompleteArtifact(
+            Coordinate.fromString("com.example:other:1.0"),
+            Set.of(), Set.of(), Map.of(), Set.of(), Set.of()).complete(Set.of());
+    ArtifactContainer container = new IncompleteArtifact(
+            Coordinate.fromString("com.example:artifact:1.0"),
+            Set.of(), Set.of(), Map.of(), Set.of(), Set.of()).complete(Set.of(other), new ArtifactIndex());
+    assertFalse(container.getFlattenedDependencies() instanceof ArtifactSet);
+    assertEquals(Set.of(other), container.getFlattenedDependencies());
+  }
+
+  private static Set<ArtifactContainer> getDependencies(List<ArtifactContainer> containers, int i) {
+    Set<ArtifactContainer> dependencies = new HashSet<>();
+    for (int offset : new int[] {1, 7, 70}) {
+      if (i % offset == 0 && i >= offset) {
+        dependencies.add(containers.get(i - offset));
+      }
+    }
+    return dependencies;
+  }
+}
@@ -0,0 +1,66 @@
+package se.krka.deps;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClassFilterTest {
+  @Test
+  public void testNoFalseNegatives() throws IOException {
+    List<String> classNames = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      classNames.add("com.example.p" + (i % 100) + ".Class" + i);
+    }
+    ClassFilter filter = roundTrip(ClassFilter.of(classNames));
+
+    for (String className : classNames) {
+      assertTrue(className, filter.mightContain(className));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (filter.mightContain("org.example.p" + (i % 100) + ".Class" + i)) {
+        falsePositives++;
+      }
+    }
+    assertTrue("False positives: " + falsePositives, falsePositives < 300);
+  }
+
+  @Test
+  public void testEmpty() {
+    ClassFilter filter = ClassFilter.of(Set.of());
+    assertFalse(filter.mightContain("java.lang.String"));
+    assertFalse(filter.definesClass("java.lang.String", new HashSet<>()));
+  }
+
+  @Test
+  public void testInvalidHashCountIsCorrupt() {
+    for (int hashes : new int[] {0, 17, Integer.MAX_VALUE}) {
+      BinaryFormat.Output output = new BinaryFormat.Output();
+      output.writeVarInt(hashes);
+      output.writeVarInt(1);
+      output.writeInt(-1);
+      output.writeInt(-1);
+      try {
+        ClassFilter.read(new BinaryFormat.Input(output.buffer(), 0, output.size()));
+        fail("Expected " + hashes + " hashes to be rejected");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+  }
+
+  private static ClassFilter roundTrip(ClassFilter filter) throws IOException {
+    BinaryFormat.Output output = new BinaryFormat.Output();
+    filter.write(output);
+    return ClassFilter.read(new BinaryFormat.Input(output.buffer(), 0, output.size()));
+  }
+}
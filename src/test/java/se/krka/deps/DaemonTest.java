@@ -0,0 +1,141 @@
+package se.krka.deps;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DaemonTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private String userHome;
+  private SymbolTable symbols;
+
+  @Before
+  public void setUp() {
+    // Class manifests and cache entries of the projects go to the temporary folder
+    userHome = System.getProperty("user.home");
+    System.setProperty("user.home", temporaryFolder.getRoot().getPath());
+    symbols = SymbolTable.getDefault();
+  }
+
+  @After
+  public void tearDown() {
+    System.setProperty("user.home", userHome);
+    SymbolTable.setDefault(symbols);
+  }
+
+  @Test
+  public void testRequests() throws Exception {
+    File stateFile = new File(temporaryFolder.getRoot(), "daemon.state");
+    assertNull(DaemonClient.send(stateFile, "tree", "com.example:missing:1.0", "text"));
+
+    Daemon daemon = new Daemon(stateFile);
+    CompletableFuture<Void> running = CompletableFuture.runAsync(() -> {
+      try {
+        daemon.run();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!stateFile.exists() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals("ERROR Unknown command: unknown\n", DaemonClient.send(stateFile, "unknown", "com.example:missing:1.0", "text"));
+    assertEquals("ERROR Expected a command and a target\n", DaemonClient.send(stateFile, "tree", "", "text"));
+    assertEquals("ERROR Unknown format: xml\n", DaemonClient.send(stateFile, "tree", "com.example:missing:1.0", "xml"));
+
+    assertEquals("OK\n", DaemonClient.send(stateFile, "stop", "", "text"));
+    running.get(10, TimeUnit.SECONDS);
+    assertFalse(stateFile.exists());
+  }
+
+  @Test
+  public void testEvictionReleasesSymbols() throws Exception {
+    Daemon daemon = new Daemon(new File(temporaryFolder.getRoot(), "daemon.state"), 1);
+    daemon.execute("tree", createProject("first", NodeTest.class), new TextReporter(new StringWriter()));
+    SymbolTable first = SymbolTable.getDefault();
+    assertTrue(first.findId(NodeTest.class.getName()) >= 0);
+
+    // Evicts the first project and starts over with symbols that only new graphs refer to
+    daemon.execute("tree", createProject("second"), new TextReporter(new StringWriter()));
+    SymbolTable second = SymbolTable.getDefault();
+    assertNotSame(first, second);
+    assertEquals(-1, second.findId(NodeTest.class.getName()));
+    assertEquals(0, second.getSetPool().size());
+    assertEquals(0, MemoryCache.getDefault().size());
+
+    // No eviction, so the epoch stays
+    daemon.execute("tree", createProject("second"), new TextReporter(new StringWriter()));
+    assertSame(second, SymbolTable.getDefault());
+  }
+
+  private String createProject(String artifactId, Class<?>... classes) throws Exception {
+    File directory = new File(temporaryFolder.getRoot(), artifactId);
+    if (directory.isDirectory()) {
+      return directory.getPath();
+    }
+    File classDirectory = new File(directory, "target/classes");
+    for (Class<?> clazz : classes) {
+      String path = clazz.getName().replace('.', '/') + ".class";
+      File classFile = new File(classDirectory, path);
+      classFile.getParentFile().mkdirs();
+      try (InputStream inputStream = clazz.getClassLoader().getResourceAsStream(path)) {
+        Files.write(classFile.toPath(), inputStream.readAllBytes());
+      }
+    }
+    classDirectory.mkdirs();
+    Files.writeString(new File(directory, "pom.xml").toPath(), "<project>\n"
+            + "  <modelVersion>4.0.0</modelVersion>\n"
+            + "  <groupId>com.example</groupId>\n"
+            + "  <artifactId>" + artifactId + "</artifactId>\n"
+            + "  <version>1.0</version>\n"
+            + "</project>\n");
+    return directory.getPath();
+  }
+
+  @Test
+  public void testFingerprint() throws Exception {
+    File pomFile = temporaryFolder.newFile("pom.xml");
+    File classes = temporaryFolder.newFolder("classes");
+    Path classFile = new File(classes, "A.class").toPath();
+    Files.write(classFile, new byte[] {1});
+    List<File> files = List.of(pomFile, classes);
+
+    Map<Path, String> fingerprint = Daemon.fingerprint(files);
+    assertEquals(2, fingerprint.size());
+    assertEquals(fingerprint, Daemon.fingerprint(files));
+
+    Files.write(classFile, new byte[] {1, 2});
+    Map<Path, String> changed = Daemon.fingerprint(files);
+    assertNotEquals(fingerprint, changed);
+
+    Files.write(new File(classes, "B.class").toPath(), new byte[] {1});
+    assertEquals(3, Daemon.fingerprint(files).size());
+
+    assertTrue(pomFile.delete());
+    assertEquals("missing", Daemon.fingerprint(files).get(pomFile.toPath()));
+  }
+}
@@ -0,0 +1,106 @@
+package se.krka.deps;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LocalRepositoryTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private LocalRepository repository;
+
+  @Before
+  public void setUp() throws IOException {
+    repository = new LocalRepository(temporaryFolder.getRoot());
+
+    writePom("com.example", "parent", "1.0", "<packaging>pom</packaging>"
+            + "<properties><library.version>2.0</library.version></properties>"
+            + "<dependencyManagement><dependencies>"
+            + dependency("com.example", "managed", "3.0", "")
+            + "</dependencies></dependencyManagement>"
+            + "<dependencies>" + dependency("com.example", "inherited", "4.0", "") + "</dependencies>");
+
+    writePom("com.example", "root", "1.0", "<parent><groupId>com.example</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version></parent>"
+            + "<dependencies>"
+            + dependency("com.example", "library", "${library.version}", "")
+            + dependency("com.example", "managed", null, "")
+            + dependency("com.example", "runtime", "1.0", "<scope>runtime</scope>")
+            + dependency("com.example", "tests", "1.0", "<type>test-jar</type>")
+            + dependency("com.example", "provided", "1.0", "<scope>provided</scope>")
+            + dependency("com.example", "test", "1.0", "<scope>test</scope>")
+            + dependency("com.example", "optional", "1.0", "<optional>true</optional>")
+            + "</dependencies>");
+    writeFile("com/example/root/1.0/root-1.0.jar", "");
+  }
+
+  @Test
+  public void testDependencies() {
+    Coordinate root = Coordinate.fromString("com.example:root:1.0");
+    assertEquals(Set.of(
+            Coordinate.fromString("com.example:inherited:4.0"),
+            Coordinate.fromString("com.example:library:2.0"),
+            Coordinate.fromString("com.example:managed:3.0"),
+            Coordinate.fromString("com.example:runtime:1.0"),
+            Coordinate.fromString("com.example:tests:test-jar:tests:1.0")),
+            repository.getDependencies(root));
+    assertEquals(new File(temporaryFolder.getRoot(), "com/example/root/1.0/root-1.0.jar"), repository.getFile(root));
+  }
+
+  @Test
+  public void testMissingArtifact() {
+    Coordinate library = Coordinate.fromString("com.example:library:2.0");
+    try {
+      repository.getFile(library);
+      fail();
+    } catch (MissingArtifactException e) {
+      assertEquals(library, e.getCoordinate());
+      assertEquals(new File(temporaryFolder.getRoot(), "com/example/library/2.0/library-2.0.jar"), e.getFile());
+    }
+  }
+
+  @Test
+  public void testMissingVersion() throws IOException {
+    writePom("com.example", "unversioned", "1.0", "<dependencies>"
+            + dependency("com.example", "library", null, "")
+            + "</dependencies>");
+    Coordinate unversioned = Coordinate.fromString("com.example:unversioned:1.0");
+    try {
+      repository.getDependencies(unversioned);
+      fail();
+    } catch (MissingArtifactException e) {
+      assertEquals(unversioned, e.getCoordinate());
+      assertEquals("Missing version of com.example:library:jar in com.example:unversioned:jar:1.0, "
+              + "it is neither declared nor managed", e.getMessage());
+    }
+  }
+
+  private static String dependency(String groupId, String artifactId, String version, String extra) {
+    return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+            + (version != null ? "<version>" + version + "</version>" : "") + extra + "</dependency>";
+  }
+
+  private void writePom(String groupId, String artifactId, String version, String content) throws IOException {
+    writeFile(groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".pom",
+            "<project><modelVersion>4.0.0</modelVersion><groupId>" + groupId + "</groupId>"
+                    + "<artifactId>" + artifactId + "</artifactId><version>" + version + "</version>"
+                    + content + "</project>");
+  }
+
+  private void writeFile(String path, String content) throws IOException {
+    File file = new File(temporaryFolder.getRoot(), path);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,33 @@
+package se.krka.deps;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricsTest {
+  @Test
+  public void testTimers() throws Exception {
+    Metrics metrics = new Metrics();
+    Metrics.Timer timer = metrics.timer("builder.scan");
+    timer.record(1_500_000);
+    timer.record(500_000);
+
+    JSONObject json = metrics.toJson().getJSONObject("timers").getJSONObject("builder.scan");
+    assertEquals(2, json.getLong("count"));
+    assertEquals(2.0, json.getDouble("totalMs"), 0.0);
+    assertEquals(1.5, json.getDouble("maxMs"), 0.0);
+
+    DynamicMBean mbean = metrics.new MBean();
+    assertEquals(2L, mbean.getAttribute("builder.scan.count"));
+    assertEquals(3, mbean.getMBeanInfo().getAttributes().length);
+  }
+
+  @Test(expected = AttributeNotFoundException.class)
+  public void testUnknownAttribute() throws Exception {
+    new Metrics().new MBean().getAttribute("missing");
+  }
+}
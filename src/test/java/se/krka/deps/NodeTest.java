@@ -2,6 +2,7 @@ package se.krka.deps;
 
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -86,4 +87,24 @@ public class NodeTest {
             "java.**", Set.of("second"));
     assertEquals(expected, output);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testManyPackages() {
+    Map<String, Set<String>> input = new HashMap<>();
+    Map<String, Set<String>> expected = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      input.put("com.example.p" + i + ".First", Set.of("first"));
+      input.put("com.example.p" + i + ".Second", Set.of(i % 2 == 0 ? "first" : "second"));
+      if (i % 2 == 0) {
+        expected.put("com.example.p" + i + ".**", Set.of("first"));
+      } else {
+        expected.put("com.example.p" + i + ".First", Set.of("first"));
+        expected.put("com.example.p" + i + ".Second", Set.of("second"));
+      }
+    }
+    // A class with the same name as a package
+    input.put("com.example.p0", Set.of("second"));
+    expected.put("com.example.*", Set.of("second"));
+    assertEquals(expected, Node.getDependencyMap(input));
+  }
+}
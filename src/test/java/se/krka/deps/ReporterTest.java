@@ -0,0 +1,154 @@
+package se.krka.deps;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReporterTest {
+  private ArtifactContainer dependency;
+  private ArtifactContainer transitive;
+  private ArtifactContainer root;
+
+  @Before
+  public void setUp() {
+    transitive = new ArtifactContainer(
+            Coordinate.fromString("com.example:transitive:1.0"),
+            Set.of(), Set.of(), Set.of(), Set.of(), Map.of(), Set.of());
+    dependency = new ArtifactContainer(
+            Coordinate.fromString("com.example:dependency:2.0"),
+            Set.of(transitive), Set.of(transitive), Set.of(transitive), Set.of(), Map.of(), Set.of());
+    root = new ArtifactContainer(
+            Coordinate.fromString("com.example:root:3.0"),
+            new LinkedHashSet<>(List.of(dependency, transitive)), Set.of(dependency, transitive), Set.of(dependency),
+            Set.of(), Map.of(), Set.of(transitive));
+  }
+
+  @Test
+  public void testText() {
+    StringWriter writer = new StringWriter();
+    report(new TextReporter(writer));
+    assertEquals("Dependency tree:\n"
+            + "  1:   com.example:root:jar:3.0\n"
+            + "  2:       com.example:dependency:jar:2.0\n"
+            + "  3:           com.example:transitive:jar:1.0\n"
+            + "           com.example:transitive:jar:1.0 (see #3)\n"
+            + "Unused dependencies:\n"
+            + "com.example:root:jar:3.0 has unused dependencies on [com.example:dependency]\n"
+            + "Undeclared dependencies:\n"
+            + "com.example:root:jar:3.0 has undeclared dependencies on [com.example:transitive:jar:1.0]\n",
+            writer.toString());
+  }
+
+  @Test
+  public void testJsonLines() {
+    StringWriter writer = new StringWriter();
+    report(new JsonLinesReporter(writer));
+    assertEquals("{\"type\":\"dependency\",\"depth\":0,\"line\":1,\"coordinate\":\"com.example:root:jar:3.0\"}\n"
+            + "{\"type\":\"dependency\",\"depth\":1,\"line\":2,\"coordinate\":\"com.example:dependency:jar:2.0\"}\n"
+            + "{\"type\":\"dependency\",\"depth\":2,\"line\":3,\"coordinate\":\"com.example:transitive:jar:1.0\"}\n"
+            + "{\"type\":\"repeated\",\"depth\":1,\"line\":3,\"coordinate\":\"com.example:transitive:jar:1.0\"}\n"
+            + "{\"type\":\"unused\",\"coordinate\":\"com.example:root:jar:3.0\",\"dependencies\":[\"com.example:dependency\"]}\n"
+            + "{\"type\":\"undeclared\",\"coordinate\":\"com.example:root:jar:3.0\",\"dependencies\":[\"com.example:transitive:jar:1.0\"]}\n",
+            writer.toString());
+  }
+
+  @Test
+  public void testCompactTree() {
+    StringWriter writer = new StringWriter();
+    report(new CompactTreeReporter(writer));
+    assertEquals("com.example:root:jar:3.0\n"
+            + "  com.example:dependency:jar:2.0\n"
+            + "    com.example:transitive:jar:1.0\n"
+            + "  com.example:transitive:jar:1.0 *\n"
+            + "unused com.example:root:jar:3.0 com.example:dependency\n"
+            + "undeclared com.example:root:jar:3.0 com.example:transitive:jar:1.0\n",
+            writer.toString());
+  }
+
+  @Test
+  public void testDependencies() {
+    Map<String, Set<String>> mappings = new LinkedHashMap<>();
+    mappings.put("com.example.dependency.**", Set.of("com.example:dependency"));
+    mappings.put("javax.servlet.Servlet", Set.of());
+    ArtifactContainer artifact = new ArtifactContainer(
+            Coordinate.fromString("com.example:artifact:1.0"),
+            Set.of(dependency), Set.of(dependency, transitive), Set.of(dependency), Set.of(), mappings, Set.of());
+
+    StringWriter text = new StringWriter();
+    artifact.reportDependencies(new TextReporter(text, "  "));
+    assertEquals("  com.example.dependency.** found in [com.example:dependency]\n"
+            + "  javax.servlet.Servlet expected in runtime\n"
+            + "  Unused: com.example:dependency:jar:2.0\n",
+            text.toString());
+
+    StringWriter jsonLines = new StringWriter();
+    artifact.reportDependencies(new JsonLinesReporter(jsonLines));
+    assertEquals("{\"type\":\"mapping\",\"coordinate\":\"com.example:artifact:jar:1.0\",\"prefix\":\"com.example.dependency.**\",\"providers\":[\"com.example:dependency\"]}\n"
+            + "{\"type\":\"mapping\",\"coordinate\":\"com.example:artifact:jar:1.0\",\"prefix\":\"javax.servlet.Servlet\",\"providers\":[]}\n"
+            + "{\"type\":\"unused\",\"coordinate\":\"com.example:artifact:jar:1.0\",\"dependencies\":[\"com.example:dependency\"]}\n",
+            jsonLines.toString());
+
+    StringWriter compact = new StringWriter();
+    artifact.reportDependencies(new CompactTreeReporter(compact));
+    assertEquals("mapping com.example:artifact:jar:1.0 com.example.dependency.** com.example:dependency\n"
+            + "mapping com.example:artifact:jar:1.0 javax.servlet.Servlet\n"
+            + "unused com.example:artifact:jar:1.0 com.example:dependency\n",
+            compact.toString());
+  }
+
+  @Test
+  public void testPrintMatchesBaseline() {
+    Map<String, Set<String>> mappings = new LinkedHashMap<>();
+    mappings.put("com.example.dependency.**", new LinkedHashSet<>(List.of("com.example:dependency", "com.example:other")));
+    mappings.put("javax.servlet.Servlet", Set.of());
+    ArtifactContainer artifact = new ArtifactContainer(
+            Coordinate.fromString("com.example:artifact:1.0"),
+            Set.of(dependency), Set.of(dependency, transitive), new LinkedHashSet<>(List.of(dependency, transitive)),
+            Set.of(), mappings, Set.of(transitive));
+
+    // The output of the print methods before they went through reporters
+    PrintStream out = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(output, true));
+    try {
+      artifact.printDependencies("    ");
+      artifact.printUnusedDependencies();
+      artifact.printUndeclaredDependencies();
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals("    com.example.dependency.** found in [com.example:dependency, com.example:other]\n"
+            + "    javax.servlet.Servlet expected in runtime\n"
+            + "    Unused: com.example:dependency:jar:2.0\n"
+            + "    Unused: com.example:transitive:jar:1.0\n"
+            + "com.example:artifact:jar:1.0 has unused dependencies on "
+            + new HashSet<>(List.of("com.example:dependency", "com.example:transitive")) + "\n"
+            + "com.example:artifact:jar:1.0 has undeclared dependencies on [com.example:transitive:jar:1.0]\n",
+            output.toString(StandardCharsets.UTF_8));
+  }
+
+  private void report(Reporter reporter) {
+    // The same events as Resolver reports for a graph with this root
+    reporter.startDependencyTree();
+    reporter.dependency(0, 1, root);
+    reporter.dependency(1, 2, dependency);
+    reporter.dependency(2, 3, transitive);
+    reporter.repeatedDependency(1, 3, transitive);
+    reporter.startUnusedWarnings();
+    root.reportUnusedDependencies(reporter);
+    reporter.startUndeclaredWarnings();
+    root.reportUndeclaredDependencies(reporter);
+  }
+}
@@ -0,0 +1,170 @@
+package se.krka.deps;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ResolverTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Map<Coordinate, ProjectModule> modules = new LinkedHashMap<>();
+
+  // Map of artifact id -> version, for the modules that aren't 1.0
+  private final Map<String, String> versions = new HashMap<>();
+
+  private String userHome;
+
+  @Before
+  public void setUp() {
+    // Keep the artifact cache of the snapshot modules out of ~/.m2
+    userHome = System.getProperty("user.home");
+    System.setProperty("user.home", temporaryFolder.getRoot().getPath());
+  }
+
+  @After
+  public void tearDown() {
+    System.setProperty("user.home", userHome);
+  }
+
+  @Test
+  public void testDiamondIsBuiltOnce() throws Exception {
+    addModule("root", "left", "right");
+    addModule("left", "base");
+    addModule("right", "base");
+    addModule("base");
+
+    Resolver resolver = Resolver.createFromModules(modules);
+
+    ArtifactContainer root = resolver.getRoots().get(0);
+    assertEquals(coordinate("root"), root.getCoordinate());
+    ArtifactContainer left = getDependency(root, "left");
+    ArtifactContainer right = getDependency(root, "right");
+    ArtifactContainer base = getDependency(left, "base");
+    assertSame(base, getDependency(right, "base"));
+    assertSame(base, resolver.getArtifacts().get(coordinate("base")));
+    assertEquals(4, resolver.getArtifacts().size());
+  }
+
+  @Test
+  public void testCycle() throws Exception {
+    addModule("first", "second");
+    addModule("second", "third");
+    addModule("third", "first");
+
+    try {
+      Resolver.createFromModules(modules);
+      fail("Expected a cycle");
+    } catch (CyclicalDependencyException e) {
+      assertEquals(List.of(coordinate("first"), coordinate("third"), coordinate("second"), coordinate("first")),
+              e.getCoordinates());
+    }
+  }
+
+  @Test
+  public void testFailedArtifactIsRetried() throws Exception {
+    addModule("root", "broken");
+    addModule("broken");
+    File jarFile = modules.get(coordinate("broken")).getOutput();
+    Files.write(jarFile.toPath(), "not a jar file".getBytes(StandardCharsets.UTF_8));
+
+    Resolver resolver = new Resolver();
+    resolver.registerModules(modules);
+    List<Coordinate> coordinates = List.of(coordinate("root"));
+    try {
+      resolver.resolveAll(coordinates);
+      fail("Expected the broken jar file to fail");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+
+    writeJarFile(jarFile);
+    ArtifactContainer root = resolver.resolveAll(coordinates).get(0);
+    assertSame(getDependency(root, "broken"), resolver.getArtifacts().get(coordinate("broken")));
+  }
+
+  @Test
+  public void testSnapshotBehindReleaseIsPartOfContentDigest() throws Exception {
+    versions.put("root", "1.0-SNAPSHOT");
+    versions.put("leaf", "1.0-SNAPSHOT");
+    addModule("root", "middle");
+    addModule("middle", "leaf");
+    addModule("leaf");
+    writeJarFile(modules.get(coordinate("root")).getOutput(), ResolverTest.class);
+    writeJarFile(modules.get(coordinate("leaf")).getOutput(), ProjectModule.class);
+
+    ArtifactContainer root = Resolver.createFromModules(modules).getRoots().get(0);
+    assertEquals(Set.of("com.example:leaf"), root.getMappings().get(ProjectModule.class.getName()));
+
+    // The leaf no longer provides the class, so the cached analysis of the root can't be used
+    writeJarFile(modules.get(coordinate("leaf")).getOutput());
+    root = Resolver.createFromModules(modules).getRoots().get(0);
+    assertFalse(root.getMappings().values().stream().anyMatch(providers -> providers.contains("com.example:leaf")));
+  }
+
+  private void addModule(String artifactId, String... dependencies) throws IOException {
+    Model model = new Model();
+    model.setGroupId("com.example");
+    model.setArtifactId(artifactId);
+    model.setVersion(coordinate(artifactId).getVersion());
+    for (String dependencyId : dependencies) {
+      Dependency dependency = new Dependency();
+      dependency.setGroupId("com.example");
+      dependency.setArtifactId(dependencyId);
+      dependency.setVersion(coordinate(dependencyId).getVersion());
+      dependency.setScope("compile");
+      model.addDependency(dependency);
+    }
+
+    File jarFile = temporaryFolder.newFile(artifactId + ".jar");
+    writeJarFile(jarFile);
+    modules.put(coordinate(artifactId), new ProjectModule(model, null, jarFile));
+  }
+
+  private static void writeJarFile(File jarFile, Class<?>... classes) throws IOException {
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jarFile))) {
+      for (Class<?> clazz : classes) {
+        String path = clazz.getName().replace('.', '/') + ".class";
+        outputStream.putNextEntry(new ZipEntry(path));
+        try (InputStream inputStream = clazz.getClassLoader().getResourceAsStream(path)) {
+          inputStream.transferTo(outputStream);
+        }
+        outputStream.closeEntry();
+      }
+    }
+  }
+
+  private Coordinate coordinate(String artifactId) {
+    return Coordinate.fromString("com.example:" + artifactId + ":" + versions.getOrDefault(artifactId, "1.0"));
+  }
+
+  private ArtifactContainer getDependency(ArtifactContainer artifact, String artifactId) {
+    return artifact.getDependencies().stream()
+            .filter(dependency -> dependency.getCoordinate().equals(coordinate(artifactId)))
+            .findFirst()
+            .orElseThrow();
+  }
+}
@@ -0,0 +1,34 @@
+package se.krka.deps;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SymbolSetPoolTest {
+  @Test
+  public void testIntern() {
+    SymbolTable symbols = new SymbolTable();
+    SymbolSetPool pool = new SymbolSetPool(symbols);
+    int guava = symbols.getId("com.google.guava:guava");
+    int junit = symbols.getId("junit:junit");
+
+    SymbolSet first = pool.intern(ids(guava, junit));
+    assertSame(first, pool.intern(ids(junit, guava)));
+    assertEquals(Set.of("com.google.guava:guava", "junit:junit"), first);
+    assertNotSame(first, pool.intern(ids(guava)));
+    assertSame(pool.intern(ids()), pool.intern(ids()));
+    assertEquals(3, pool.size());
+  }
+
+  private static IntHashSet ids(int... values) {
+    IntHashSet ids = new IntHashSet();
+    for (int value : values) {
+      ids.add(value);
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,50 @@
+package se.krka.deps;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SymbolTableTest {
+  @Test
+  public void testDenseIds() {
+    SymbolTable symbols = new SymbolTable();
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, symbols.getId("com.example.Class" + i));
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i, symbols.findId("com.example.Class" + i));
+      assertEquals("com.example.Class" + i, symbols.getName(i));
+    }
+    assertEquals(-1, symbols.findId("com.example.Missing"));
+  }
+
+  @Test
+  public void testIntern() {
+    SymbolTable symbols = new SymbolTable();
+    String name = symbols.intern(new String("java.lang.String"));
+    assertSame(name, symbols.intern(new String("java.lang.String")));
+
+    Coordinate coordinate = symbols.intern(Coordinate.fromString("junit:junit:4.12"));
+    assertSame(coordinate, symbols.intern(Coordinate.fromString("junit:junit:4.12")));
+  }
+
+  @Test
+  public void testSymbolSet() {
+    SymbolTable symbols = new SymbolTable();
+    List<String> names = List.of("java.lang.String", "java.lang.Object", "java.util.List");
+    Set<String> set = SymbolSet.of(symbols, names);
+
+    assertEquals(new HashSet<>(names), set);
+    assertEquals(new HashSet<>(names).hashCode(), set.hashCode());
+    assertTrue(set.contains("java.util.List"));
+    assertFalse(set.contains("java.util.Map"));
+    assertFalse(set.contains("never.added.Anywhere"));
+  }
+}
@@ -0,0 +1,80 @@
+package se.krka.deps;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class UsageMatcherTest {
+  private static final Set<String> GUAVA = Set.of("com.google.guava:guava");
+  private static final Set<String> JUNIT = Set.of("junit:junit");
+  private static final Set<String> COMMONS = Set.of("commons-lang:commons-lang");
+  private static final Set<String> BOTH = Set.of("junit:junit", "org.hamcrest:hamcrest-core");
+
+  @Test
+  public void testAll() {
+    UsageMatcher matcher = new UsageMatcher(Map.of("**", GUAVA, "com.Exact", JUNIT));
+    assertEquals(GUAVA, matcher.getUsages("com.google.common.base.Strings"));
+    assertEquals(GUAVA, matcher.getUsages("Strings"));
+    assertEquals(JUNIT, matcher.getUsages("com.Exact"));
+  }
+
+  @Test
+  public void testPackages() {
+    Map<String, Set<String>> mappings = new HashMap<>();
+    mappings.put("*", COMMONS);
+    mappings.put("com.google.**", GUAVA);
+    mappings.put("org.junit.*", JUNIT);
+    mappings.put("org.junit.Assert", BOTH);
+    mappings.put("org.junit.rules.**", BOTH);
+    mappings.put("org.junit.runner.Runner", COMMONS);
+    mappings.put("org.junit.runners.*", COMMONS);
+    mappings.put("org.junit.runners.model.**", GUAVA);
+    mappings.put("java.Missing", Set.of());
+    UsageMatcher matcher = new UsageMatcher(mappings);
+
+    // Exact class names first
+    assertEquals(BOTH, matcher.getUsages("org.junit.Assert"));
+    assertEquals(COMMONS, matcher.getUsages("org.junit.runner.Runner"));
+    assertEquals(Set.of(), matcher.getUsages("java.Missing"));
+
+    // "*" at the top only applies to classes without a package
+    assertEquals(COMMONS, matcher.getUsages("NoPackage"));
+    assertEquals(Set.of(), matcher.getUsages("java.Other"));
+
+    // Then the deepest package with a mapping
+    assertEquals(GUAVA, matcher.getUsages("com.google.Foo"));
+    assertEquals(GUAVA, matcher.getUsages("com.google.common.collect.Lists"));
+    assertEquals(JUNIT, matcher.getUsages("org.junit.Test"));
+    assertEquals(BOTH, matcher.getUsages("org.junit.rules.TemporaryFolder"));
+    assertEquals(BOTH, matcher.getUsages("org.junit.rules.nested.Rule"));
+    assertEquals(COMMONS, matcher.getUsages("org.junit.runners.Suite"));
+    assertEquals(GUAVA, matcher.getUsages("org.junit.runners.model.Statement"));
+    assertEquals(COMMONS, matcher.getUsages("org.junit.runners.other.Thing"));
+    assertEquals(JUNIT, matcher.getUsages("org.junit.runner.Description"));
+    assertEquals(JUNIT, matcher.getUsages("org.junit.internal.Checks"));
+
+    // Package names that only share a prefix with a mapped package
+    assertEquals(Set.of(), matcher.getUsages("com.googlex.Foo"));
+    assertEquals(Set.of(), matcher.getUsages("org.jun.Test"));
+    assertEquals(Set.of(), matcher.getUsages("com.Foo"));
+  }
+
+  @Test
+  public void testFromNode() {
+    Map<String, Set<String>> classes = Map.of(
+            "java.lang.String", GUAVA,
+            "java.lang.Object", GUAVA,
+            "java.lang.util.Something", JUNIT,
+            "java.util.Date", COMMONS,
+            "java.util.List", JUNIT);
+    ArtifactContainer container = new ArtifactContainer(
+            Coordinate.fromString("com.example:artifact:1.0"),
+            Set.of(), Set.of(), Set.of(), Set.of(), Node.getDependencyMap(classes), Set.of());
+    classes.forEach((className, usages) -> assertEquals(usages, container.getUsages(className)));
+    assertEquals(GUAVA, container.getUsages("java.lang.Integer"));
+  }
+}